@@ -0,0 +1,114 @@
+ /*
+  * Comic Book Creator - A program for creating a comic book photo album.
+  * Copyright (C) 2013  Alastair Crowe
+  *
+  * This code is free software; you can redistribute it and/or modify it
+  * under the terms of the GNU General Public License version 2 only, as
+  * published by the Free Software Foundation.
+  *
+  * This code is distributed in the hope that it will be useful, but WITHOUT
+  * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+  * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+  * version 2 for more details.
+  
+  * You should have received a copy of the GNU General Public License version
+  * 2 along with this work; if not, write to the Free Software Foundation,
+  * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+  *
+  * Please contact comicbookhelp@gmail.com if you need additional information
+  * or have any questions.
+  */
+package comicBookModel;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+/**
+ * Creates the images the benchmarks run on. Synthetic images are smooth
+ * gradients with noise. Photo images are scaled from the photo named by the 
+ * system property benchmark.photo.
+ */
+class BenchmarkImages {
+    static final String SYNTHETIC = "synthetic";
+    static final String PHOTO = "photo";
+    /**
+     * Returns an RGB PositionedImage of the source and resolution.
+     * @param source BenchmarkImages.SYNTHETIC or BenchmarkImages.PHOTO
+     * @param resolution The width and height, e.g. "800x600"
+     * @throws IllegalArgumentException If the source or resolution is not 
+     * recognised
+     * @throws IllegalStateException If the photo is not set or cannot be read
+     */
+    static PositionedImage create(String source, String resolution){
+        String[] dimensions = resolution.split("x");
+        if(dimensions.length != 2){
+            throw new IllegalArgumentException(resolution);
+        }
+        int width = Integer.parseInt(dimensions[0]);
+        int height = Integer.parseInt(dimensions[1]);
+        if(SYNTHETIC.equals(source)){
+            return synthetic(width, height);
+        }else if(PHOTO.equals(source)){
+            return photo(width, height);
+        }else{
+            throw new IllegalArgumentException(source);
+        }
+    }
+    /**
+     * Returns a copy of the image with the same pixels, but none of the 
+     * data calculated from them, such as its summed-area table.
+     */
+    static PositionedImage copy(PositionedImage image){
+        PositionedImage copy = new PositionedImage(image.getWidth(), image.getHeight(), image.getType());
+        copy.getRaster().setRect(image.getRaster());
+        return copy;
+    }
+    /**
+     * A gradient in each channel with noise, so no two rows are the same.
+     */
+    private static PositionedImage synthetic(int width, int height){
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        int[] row = new int[width];
+        for(int y = 0; y < height; y++){
+            for(int x = 0; x < width; x++){
+                int r = (x * 255 / width + random.nextInt(40)) & 0xFF;
+                int g = (y * 255 / height + random.nextInt(40)) & 0xFF;
+                int b = ((x + y) * 3 + random.nextInt(60)) & 0xFF;
+                row[x] = (r << 16) | (g << 8) | b;
+            }
+            image.setRGB(0, y, width, 1, row, 0, width);
+        }
+        return new PositionedImage(image, PositionedImage.TYPE_INT_RGB);
+    }
+    /**
+     * The photo named by the system property benchmark.photo, scaled to the
+     * size.
+     */
+    private static PositionedImage photo(int width, int height){
+        String name = System.getProperty("benchmark.photo");
+        if(name == null){
+            throw new IllegalStateException("Set -Dbenchmark.photo to a photo to use photo inputs");
+        }
+        BufferedImage photo;
+        try {
+            photo = ImageIO.read(new File(name));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        if(photo == null){
+            throw new IllegalStateException("Cannot read " + name);
+        }
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(photo, 0, 0, width, height, null);
+        g.dispose();
+        return new PositionedImage(image, PositionedImage.TYPE_INT_RGB);
+    }
+}
@@ -0,0 +1,97 @@
+ /*
+  * Comic Book Creator - A program for creating a comic book photo album.
+  * Copyright (C) 2013  Alastair Crowe
+  *
+  * This code is free software; you can redistribute it and/or modify it
+  * under the terms of the GNU General Public License version 2 only, as
+  * published by the Free Software Foundation.
+  *
+  * This code is distributed in the hope that it will be useful, but WITHOUT
+  * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+  * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+  * version 2 for more details.
+  
+  * You should have received a copy of the GNU General Public License version
+  * 2 along with this work; if not, write to the Free Software Foundation,
+  * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+  *
+  * Please contact comicbookhelp@gmail.com if you need additional information
+  * or have any questions.
+  */
+package comicBookModel;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+/**
+ * Benchmarks of the black and white and RGB halftones, by rotating the 
+ * image (toHalftone) and from a rotated lattice (toLatticeHalftone). The 
+ * lattice halftones are given fresh copies of the images each invocation, 
+ * so building the summed-area table is measured as it is in a single 
+ * halftone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector", "-Xmx4g"})
+public class HalftoneBenchmarks {
+    @Param({BenchmarkImages.SYNTHETIC})
+    public String source;
+    @Param({"800x600", "2048x1536", "4000x3000"})
+    public String resolution;
+    @Param({"4", "8", "16"})
+    public int size;
+    @Param({"false", "true"})
+    public boolean parallel;
+    
+    private PositionedImage rgb, grey;
+    
+    @Setup(Level.Trial)
+    public void setup(){
+        rgb = BenchmarkImages.create(source, resolution);
+        grey = rgb.toGreyscale();
+    }
+    /**
+     * Copies of the images made before each invocation, which have not yet
+     * built their summed-area tables.
+     */
+    @State(Scope.Thread)
+    public static class Copies {
+        PositionedImage rgb, grey;
+        
+        @Setup(Level.Invocation)
+        public void setup(HalftoneBenchmarks benchmarks){
+            rgb = BenchmarkImages.copy(benchmarks.rgb);
+            grey = BenchmarkImages.copy(benchmarks.grey);
+        }
+    }
+    @Benchmark
+    public PositionedImage toHalftoneRGB(){
+        return rgb.toHalftone(size, parallel);
+    }
+    @Benchmark
+    public PositionedImage toHalftoneBW(){
+        return grey.toHalftone(size, parallel);
+    }
+    @Benchmark
+    public PositionedImage toLatticeHalftoneRGB(Copies copies){
+        return copies.rgb.toLatticeHalftone(size, parallel);
+    }
+    @Benchmark
+    public PositionedImage toLatticeHalftoneBW(Copies copies){
+        return copies.grey.toLatticeHalftone(size, parallel);
+    }
+}
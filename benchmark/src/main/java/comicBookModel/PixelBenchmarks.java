@@ -0,0 +1,114 @@
+ /*
+  * Comic Book Creator - A program for creating a comic book photo album.
+  * Copyright (C) 2013  Alastair Crowe
+  *
+  * This code is free software; you can redistribute it and/or modify it
+  * under the terms of the GNU General Public License version 2 only, as
+  * published by the Free Software Foundation.
+  *
+  * This code is distributed in the hope that it will be useful, but WITHOUT
+  * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+  * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+  * version 2 for more details.
+  
+  * You should have received a copy of the GNU General Public License version
+  * 2 along with this work; if not, write to the Free Software Foundation,
+  * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+  *
+  * Please contact comicbookhelp@gmail.com if you need additional information
+  * or have any questions.
+  */
+package comicBookModel;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+/**
+ * Benchmarks of the PositionedImage pixel methods: greyscale conversion,
+ * rotation, shears, reset and adding images, with both PixelKernels.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector", "-Xmx4g"})
+public class PixelBenchmarks {
+    @Param({BenchmarkImages.SYNTHETIC})
+    public String source;
+    @Param({"800x600", "2048x1536", "4000x3000"})
+    public String resolution;
+    @Param({PixelKernels.VECTOR, PixelKernels.SCALAR})
+    public String kernels;
+    
+    private PositionedImage rgb, grey, rotatedRGB, rotatedGrey;
+    
+    @Setup(Level.Trial)
+    public void setup(){
+        if(!PixelKernels.select(kernels).equals(kernels)){
+            throw new IllegalStateException(kernels + " kernels are not available");
+        }
+        rgb = BenchmarkImages.create(source, resolution);
+        grey = rgb.toGreyscale();
+        rotatedRGB = rgb.rotate(Math.toRadians(15));
+        rotatedGrey = grey.rotate(Math.toRadians(15));
+    }
+    @Benchmark
+    public PositionedImage toGreyscale(){
+        return rgb.toGreyscale();
+    }
+    @Benchmark
+    public PositionedImage rotateRGB(){
+        return rgb.rotate(Math.toRadians(15));
+    }
+    @Benchmark
+    public PositionedImage rotateGrey(){
+        return grey.rotate(Math.toRadians(15));
+    }
+    @Benchmark
+    public PositionedImage shearVertRGB(){
+        return rgb.shearVert(0.3);
+    }
+    @Benchmark
+    public PositionedImage shearHorzRGB(){
+        return rgb.shearHorz(-0.3);
+    }
+    @Benchmark
+    public PositionedImage shearVertGrey(){
+        return grey.shearVert(0.3);
+    }
+    @Benchmark
+    public PositionedImage shearHorzGrey(){
+        return grey.shearHorz(-0.3);
+    }
+    @Benchmark
+    public PositionedImage resetRGB(){
+        return rotatedRGB.reset(rgb.getWidth(), rgb.getHeight());
+    }
+    @Benchmark
+    public PositionedImage resetGrey(){
+        return rotatedGrey.reset(grey.getWidth(), grey.getHeight());
+    }
+    /**
+     * Copying a PositionedImage adds it onto a blank one.
+     */
+    @Benchmark
+    public PositionedImage addImageRGB(){
+        return new PositionedImage(rgb, PositionedImage.TYPE_INT_RGB);
+    }
+    @Benchmark
+    public PositionedImage addImageGrey(){
+        return new PositionedImage(grey, PositionedImage.TYPE_BYTE_GRAY);
+    }
+}
@@ -99,7 +99,7 @@ class BorderPanel extends ComicBookPanel implements ActionListener{
      * comic, the ComicBookState state, and this BorderPanel.
      */
     public void actionPerformed(ActionEvent e) {
-        ComicPage page = comic.getPage(state.getPage());
+        final ComicPage page = comic.getPage(state.getPage());
         final Layer layer = page.getLayer(state.getLayer());
         Border border = layer.getBorder();
         boolean active = border.gridActive();
@@ -111,7 +111,7 @@ class BorderPanel extends ComicBookPanel implements ActionListener{
                    // Update the GUI with the selected border color
                 public void stateChanged(ChangeEvent e) {
                     layer.BORDER_COLOR = colorChooser.getColor();
-                    state.repaint();
+                    state.repaintPage(page);
                 }
             };
             layer.BORDER_COLOR = colorChooser.showDialog(this, "Select Border Color", listener);
@@ -42,6 +42,7 @@ class ComicBookGUI extends ComicBookPanel {
         // Setup the editor panel
         editorPanel = new EditorPanel(comic, state);
         editorPanel.setPreferredSize(new Dimension(pageWidth, pageHeight));
+        state.setEditor(editorPanel);
         // Setup the panels and create the toolbox panel
         ComicBookPanel layerPanel = new LayerPanel(comic, state);
         ComicBookPanel borderPanel = new BorderPanel(comic, state);
@@ -21,8 +21,17 @@
 package comicBookGUI;
 
 import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.concurrent.ExecutionException;
 
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+
+import comicBookModel.ComicPage;
+import comicBookModel.HalftoneJob;
+import comicBookModel.HalftoneService;
+import comicBookModel.PositionedImage;
 
 /**
  * This class holds the current state of the ComicBookGUI (e.g. which buttons
@@ -42,8 +51,17 @@ class ComicBookState {
     static final String CONTENTS_BORDER_MODE = "Image and Border Mode";
     // The Grid Spacing 
     static final int GRID = 20;
+    // The number of halftones calculated at once, and the number which may wait
+    static final int HALFTONE_THREADS = 2;
+    static final int HALFTONE_QUEUE = 8;
     // The GUI
     private JPanel gui;
+    // The editor, which is repainted alone when only the page changes
+    private EditorPanel editor;
+    // The area of the action point highlight last repainted
+    private Rectangle highlight = null;
+    // Calculates halftones in the background
+    private final HalftoneService halftoneService = new HalftoneService(HALFTONE_THREADS, HALFTONE_QUEUE);
     // Current State Variables
     /**
      * The currently selected page, -1 indicates no page is selected.
@@ -146,10 +164,80 @@ class ComicBookState {
     void setActionActive(boolean actionActive) {
         this.actionActive = actionActive;
     }    
+    /**
+     * Sets the editor showing the current page.
+     */
+    void setEditor(EditorPanel editor) {
+        this.editor = editor;
+    }
     /**
      * Repaints the entire GUI
      */
     void repaint(){
+        highlight = getHighlight();
         gui.repaint();
     }
+    /**
+     * Repaints only the parts of the editor which have changed. A new frame
+     * is requested for the damaged area of the page, which is repainted when
+     * it has been drawn. The old and new action point highlights are 
+     * repainted straight away.
+     * @see EditorPanel#requestFrame(ComicPage)
+     */
+    void repaintPage(ComicPage page){
+        editor.requestFrame(page);
+        Rectangle area = null;
+        Rectangle newHighlight = getHighlight();
+        for(Rectangle rect : new Rectangle[]{highlight, newHighlight}){
+            if(rect != null){
+                area = area == null ? rect : area.union(rect);
+            }
+        }
+        highlight = newHighlight;
+        if(area != null){
+            editor.repaint(area);
+        }
+    }
+    /**
+     * Returns the area the editor highlights the action point in, or null if
+     * there is no action point.
+     */
+    private Rectangle getHighlight(){
+        if(actionPoint == null){
+            return null;
+        }
+        return new Rectangle(actionPoint.x - 10, actionPoint.y - 10, 21, 21);
+    }
+    /**
+     * Starts calculating the halftone of an image in the background. The 
+     * GUI is repainted as the halftone progresses and when it finishes. If
+     * the halftone fails the error is shown.
+     * @see HalftoneService#submit(PositionedImage, int, HalftoneJob.Listener)
+     */
+    HalftoneJob submitHalftone(PositionedImage image, int size){
+        final Runnable repaint = new Runnable(){
+            public void run() {
+                repaint();
+            }
+        };
+        return halftoneService.submit(image, size, new HalftoneJob.Listener(){
+            public void progressChanged(HalftoneJob job) {
+                SwingUtilities.invokeLater(repaint);
+                if(job.isDone() && !job.isCancelled()){
+                    try {
+                        job.get();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } catch (ExecutionException e) {
+                        final String error = "Error calculating the halftone:\n" + e.getCause();
+                        SwingUtilities.invokeLater(new Runnable(){
+                            public void run() {
+                                JOptionPane.showMessageDialog(null, error, "Error", JOptionPane.ERROR_MESSAGE);
+                            }
+                        });
+                    }
+                }
+            }
+        });
+    }
 }
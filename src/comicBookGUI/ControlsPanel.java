@@ -20,8 +20,11 @@
   */
 package comicBookGUI;
 
+import java.awt.BorderLayout;
 import java.awt.Dimension;
 import java.awt.Graphics;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 
@@ -30,10 +33,14 @@ import javax.swing.BorderFactory;
 import javax.swing.Box;
 import javax.swing.BoxLayout;
 import javax.swing.ImageIcon;
+import javax.swing.JButton;
 import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
 
 import comicBookModel.ComicBook;
 import comicBookModel.ComicPage;
+import comicBookModel.HalftoneJob;
 import comicBookModel.ImageLayer;
 import comicBookModel.Layer;
 import comicBookModel.TextLayer;
@@ -42,6 +49,7 @@ import comicBookModel.TextLayer;
 class ControlsPanel extends ComicBookPanel {
     // Only update the components when they have changed
     String prevBorderMode = null;
+    HalftoneJob prevJob = null;
     
     // The JLabels that make up a ControlsPanel
     private final JLabel moveImageAndBorder, moveImage;
@@ -50,8 +58,11 @@ class ControlsPanel extends ComicBookPanel {
     private final JLabel resizeImage, resizeBorder;
     private final JLabel resizeTextAndBorder, resizeText;
     private final JLabel moveDeleteVertex, createVertex;
+    // Shows the progress of the current layers halftone while it is calculated
+    private final JPanel halftonePanel;
+    private final JProgressBar halftoneProgress;
     
-    ControlsPanel(ComicBook comic, ComicBookState state) {
+    ControlsPanel(final ComicBook comic, final ComicBookState state) {
         super(comic, state);
         // Setup the layout and border
         setLayout(new BoxLayout(this, BoxLayout.PAGE_AXIS));
@@ -83,6 +94,24 @@ class ControlsPanel extends ComicBookPanel {
         moveDeleteVertex = createJLabel("Left drag the vertex to move it or double click to delete it.", grabVertex);
         // Grab edge label
         createVertex = createJLabel("Double click the edge to add a new vertex.", grabEdge);
+        // Halftone progress panel
+        halftoneProgress = new JProgressBar(0, 100);
+        halftoneProgress.setStringPainted(true);
+        JButton cancel = new JButton("Cancel");
+        cancel.addActionListener(new ActionListener(){
+            // Cancel the current layers halftone and remove the effect
+            public void actionPerformed(ActionEvent e) {
+                Layer layer = comic.getPage(state.getPage()).getLayer(state.getLayer());
+                if(layer instanceof ImageLayer){
+                    ((ImageLayer) layer).cancelHalftone();
+                }
+                state.repaint();
+            }
+        });
+        halftonePanel = new JPanel(new BorderLayout(hgap, vgap));
+        halftonePanel.setBorder(BorderFactory.createTitledBorder(null, "Calculating Halftone", 2, 0));
+        halftonePanel.add(halftoneProgress, BorderLayout.CENTER);
+        halftonePanel.add(cancel, BorderLayout.EAST);
         
         // Update to reflect the current state
         update();
@@ -149,6 +178,24 @@ class ControlsPanel extends ComicBookPanel {
             setSize(getPreferredSize());
             // This component is no longer valid
             validate();
+            // The halftone panel was removed
+            prevJob = null;
+        }
+        // Show the halftone panel while the current layers halftone is 
+        // calculated
+        Layer layer = comic.getPage(state.getPage()).getLayer(state.getLayer());
+        HalftoneJob job = layer instanceof ImageLayer ? ((ImageLayer) layer).getHalftoneJob() : null;
+        if(job != prevJob){
+            prevJob = job;
+            remove(halftonePanel);
+            if(job != null){
+                add(halftonePanel);
+            }
+            setSize(getPreferredSize());
+            validate();
+        }
+        if(job != null){
+            halftoneProgress.setValue((int) (job.getProgress() * 100));
         }
     }
     public void paint(Graphics g){
@@ -132,7 +132,7 @@ class EditorControl implements MouseListener, MouseMotionListener, KeyListener{
         state.setActionActive(true);
         e.consume();
         // Flag state as updated
-        state.repaint();
+        state.repaintPage(comic.getPage(state.getPage()));
     }
     public void mouseMoved(MouseEvent e) {
         Point mouse = new Point(e.getX(), e.getY());
@@ -162,7 +162,7 @@ class EditorControl implements MouseListener, MouseMotionListener, KeyListener{
         state.setActionActive(false);
         // Flag state as updated
         e.consume();
-        state.repaint();
+        state.repaintPage(comic.getPage(state.getPage()));
     }
     /***** MouseListener Methods *****/
     public void mouseClicked(MouseEvent e) {}
@@ -207,7 +207,7 @@ class EditorControl implements MouseListener, MouseMotionListener, KeyListener{
         Layer layer = comic.getPage(state.getPage()).getLayer(state.getLayer());
         if(layer instanceof TextLayer){
             ((TextLayer) layer).appendText(e.getKeyChar());
-            state.repaint();
+            state.repaintPage(comic.getPage(state.getPage()));
         }
         e.consume();
     }
@@ -25,8 +25,9 @@ import java.awt.Color;
 import java.awt.Cursor;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
-import java.awt.Image;
 import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.TexturePaint;
 import java.awt.Toolkit;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
@@ -34,22 +35,31 @@ import java.io.IOException;
 import javax.imageio.ImageIO;
 import javax.swing.BorderFactory;
 
+import comicBookModel.Border;
 import comicBookModel.ComicBook;
 import comicBookModel.ComicPage;
-import comicBookModel.Layer;
 
 @SuppressWarnings("serial")
 class EditorPanel extends ComicBookPanel {
     /***** Controller *****/
     private final EditorControl editorControl = new EditorControl(comic, state);
     
-    /***** Dashed Stroke *****/
-    private static final float[] DASH = {10f};
     /***** Cursors *****/
     private Cursor pointer = Cursor.getPredefinedCursor(Cursor.DEFAULT_CURSOR);
     private Cursor move = Cursor.getPredefinedCursor(Cursor.MOVE_CURSOR);
     private Cursor resize = Cursor.getPredefinedCursor(Cursor.N_RESIZE_CURSOR);
     private Cursor grab = Cursor.getPredefinedCursor(Cursor.HAND_CURSOR);
+    /***** Page Frames *****/
+    // Draws the frames of the page on its own thread
+    private final PageRenderer renderer = new PageRenderer(this);
+    // The page and layer of the last frame requested, and if it was a draft
+    private ComicPage framePage;
+    private int frameLayer;
+    private boolean frameDraft;
+    /***** Grid Overlay *****/
+    // One cell of the grid, tiled over the page while the grid is active
+    private TexturePaint gridPaint;
+    private int gridPaintSpacing;
     
     /***** Constructor *****/
     EditorPanel(ComicBook comic, ComicBookState state) {
@@ -82,21 +92,65 @@ class EditorPanel extends ComicBookPanel {
         this.grab = grab;
     }
     void update() {}
+    /**
+     * Requests a new frame of the page, if it has changed since the last 
+     * frame was requested. Only the area which has changed is drawn again, 
+     * with the border of the layer being edited highlighted. While the layer
+     * is dragged it is drawn as a draft, and at full quality once released.
+     * @see ComicPage#getDamage()
+     */
+    void requestFrame(ComicPage page){
+        Rectangle damage = page.getDamage();
+        if(page != framePage || state.getLayer() != frameLayer){
+            framePage = page;
+            frameLayer = state.getLayer();
+            damage = new Rectangle(0, 0, page.getWidth(), page.getHeight());
+        }else if(state.getActionActive() != frameDraft){
+            Rectangle bounds = page.getLayer(frameLayer).getBounds();
+            damage = damage == null ? bounds : damage.union(bounds);
+        }
+        frameDraft = state.getActionActive();
+        if(damage != null){
+            renderer.request(page.snapshot(), frameLayer, frameDraft, damage);
+        }
+    }
+    /**
+     * Returns a TexturePaint of one cell of the grid of the specified 
+     * spacing, with a dot at its centre.
+     */
+    private TexturePaint getGridPaint(int spacing){
+        if(gridPaint == null || gridPaintSpacing != spacing){
+            BufferedImage cell = new BufferedImage(spacing, spacing, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = cell.createGraphics();
+            int centre = spacing / 2;
+            g.setColor(new Color(0, 0, 0, 128));
+            g.fillOval(centre - 1, centre - 1, 3, 3);
+            g.setColor(Color.BLACK);
+            g.fillOval(centre, centre, 1, 1);
+            g.dispose();
+            gridPaint = new TexturePaint(cell, new Rectangle(0, 0, spacing, spacing));
+            gridPaintSpacing = spacing;
+        }
+        return gridPaint;
+    }
     public void paint(Graphics g){
         super.paint(g);
         ComicPage page = comic.getPage(state.getPage());
-        // Highlight a border
-        Layer layer = page.getLayer(state.getLayer());
-        BasicStroke stroke = layer.getStroke();
-        BasicStroke newStroke = new BasicStroke(stroke.getLineWidth(), stroke.getEndCap(), 
-                stroke.getLineJoin(), stroke.getMiterLimit(), DASH, 0f);
-        layer.setStroke(newStroke);
-        // Create the image
-        Image image = page.toImage();
-        // Undo border highlight
-        layer.setStroke(stroke);
-        // Draw the image
-        g.drawImage(image, 0, 0, null);
+        // Draw the last frame of the page, asking for a new one if the page
+        // has changed. This is repainted again when it is drawn.
+        requestFrame(page);
+        renderer.drawFrame(g);
+        Rectangle clip = g.getClipBounds();
+        if(clip == null){
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        }
+        // The grid is drawn over the page, it is not part of the page itself
+        Border border = page.getLayer(state.getLayer()).getBorder();
+        if(border.gridActive()){
+            Graphics2D g2 = (Graphics2D) g;
+            g2.setPaint(getGridPaint(border.getGrid()));
+            g2.fill(clip.intersection(new Rectangle(0, 0, page.getWidth(), page.getHeight())));
+        }
         // Highlight a Point
         if(state.getActionMode() == ComicBookState.CREATE_ACTION){
             // Update the cursor
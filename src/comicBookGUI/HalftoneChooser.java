@@ -31,6 +31,11 @@ import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
 import java.awt.image.BufferedImage;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.swing.BorderFactory;
 import javax.swing.ImageIcon;
@@ -38,9 +43,10 @@ import javax.swing.JButton;
 import javax.swing.JDialog;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
-import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JSlider;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 
@@ -95,10 +101,6 @@ class HalftoneChooser extends JDialog implements MouseListener, MouseMotionListe
      * A smaller version of image which is within selector dimensions
      */
     private BufferedImage selectorImage;
-    /**
-     * The previewImage with halftone applied.
-     */
-    private PositionedImage halftone;    
     /**
      * The minimum selectable halftone (less than 2 wouldn't make sense)
      */
@@ -136,6 +138,26 @@ class HalftoneChooser extends JDialog implements MouseListener, MouseMotionListe
      * Flag to indicate if the user has OK'd the selected halftone
      */
     private boolean success = false;
+    /**
+     * The delay in milliseconds after the last change before the preview is
+     * calculated
+     */
+    private final int previewDelay = 40;
+    /**
+     * Requests the preview once the slider or selection has stopped changing
+     * for previewDelay
+     */
+    private final Timer previewTimer;
+    /**
+     * Calculates the previews one at a time, away from the event dispatch 
+     * thread
+     */
+    private final ThreadPoolExecutor previewExecutor;
+    /**
+     * Counts the preview requests. A preview is dropped if a later one has 
+     * been requested.
+     */
+    private final AtomicInteger previewRequest = new AtomicInteger();
     
     /**
      * Constructor for HalftoneChooser, use showDiaglog to display the HalftoneChooser
@@ -170,6 +192,23 @@ class HalftoneChooser extends JDialog implements MouseListener, MouseMotionListe
         this.preview = new JLabel();
         this.preview.setPreferredSize(new Dimension(previewWidth, previewHeight));
         this.preview.setHorizontalAlignment(JLabel.CENTER);
+        // Create the preview timer and the thread it runs the previews on
+        this.previewTimer = new Timer(previewDelay, new ActionListener(){
+            public void actionPerformed(ActionEvent e) {
+                requestPreview();
+            }
+        });
+        this.previewTimer.setRepeats(false);
+        ThreadFactory factory = new ThreadFactory(){
+            public Thread newThread(Runnable r){
+                Thread thread = new Thread(r, "Halftone Preview");
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+        this.previewExecutor = new ThreadPoolExecutor(1, 1, 1L, TimeUnit.SECONDS, 
+                new LinkedBlockingQueue<Runnable>(), factory);
+        this.previewExecutor.allowCoreThreadTimeOut(true);
         updatePreviewImage();
         // Create the slider and get it to update the preview window
         this.slider = new JSlider(JSlider.HORIZONTAL, this.minHalftoneSize, this.maxHalftoneSize, this.halftoneSize);
@@ -200,12 +239,6 @@ class HalftoneChooser extends JDialog implements MouseListener, MouseMotionListe
         this.pack();
         this.setModalityType(ModalityType.APPLICATION_MODAL);
     }
-    /**
-     * @return The halftoned preview image
-     */
-    PositionedImage getHalftone(){
-        return this.halftone;
-    }
     /**
      * @return The currently selected halftone size
      */
@@ -238,13 +271,60 @@ class HalftoneChooser extends JDialog implements MouseListener, MouseMotionListe
     }
     /**
      * Updates the halftone on the preview image to the currently selected 
-     * halftone size.
+     * halftone size. The preview is calculated in the background once the 
+     * changes stop for previewDelay.
      */
     private void updatePreviewHalftone(){
-        PositionedImage halftone = previewImage.toHalftone(halftoneSize);
-        ImageIcon icon = new ImageIcon(halftone);
-        preview.setIcon(icon);
-        preview.validate();
+        previewTimer.restart();
+    }
+    /**
+     * Calculates the preview of the current preview image and halftone size
+     * in the background. A half resolution preview is shown first, then the
+     * full resolution preview. Requests are run in order, and any request 
+     * which has been replaced by a later one is skipped.
+     */
+    private void requestPreview(){
+        final int request = previewRequest.incrementAndGet();
+        final PositionedImage sample = this.previewImage;
+        final int size = this.halftoneSize;
+        previewExecutor.execute(new Runnable(){
+            public void run() {
+                // Show a quick preview from half the resolution first
+                if(request != previewRequest.get()){return;}
+                int width = sample.getWidth();
+                int height = sample.getHeight();
+                int halfWidth = Math.max(1, width / 2);
+                int halfHeight = Math.max(1, height / 2);
+                BufferedImage half = new BufferedImage(halfWidth, halfHeight, sample.getType());
+                Graphics2D g = half.createGraphics();
+                g.drawImage(sample, 0, 0, halfWidth, halfHeight, null);
+                g.dispose();
+                PositionedImage halfHalftone = new PositionedImage(half, half.getType()).toLatticeHalftone(size / 2, false);
+                BufferedImage lowRes = new BufferedImage(width, height, sample.getType());
+                g = lowRes.createGraphics();
+                g.drawImage(halfHalftone, 0, 0, width, height, null);
+                g.dispose();
+                showPreview(request, lowRes);
+                // Then replace it with the full resolution preview
+                if(request != previewRequest.get()){return;}
+                showPreview(request, sample.toLatticeHalftone(size, false));
+            }
+        });
+    }
+    /**
+     * Shows the preview on the event dispatch thread, unless a later preview
+     * has been requested.
+     */
+    private void showPreview(final int request, final BufferedImage image){
+        SwingUtilities.invokeLater(new Runnable(){
+            public void run() {
+                if(request == previewRequest.get()){
+                    preview.setIcon(new ImageIcon(image));
+                    preview.validate();
+                    preview.repaint();
+                }
+            }
+        });
     }
     /**
      * Updates the preview image to the currently selected position on the 
@@ -342,27 +422,13 @@ class HalftoneChooser extends JDialog implements MouseListener, MouseMotionListe
      *  Listener method for the OK and Cancel buttons.  
      */
     public void actionPerformed(ActionEvent e) {
+        // Drop any previews still to be calculated
+        previewTimer.stop();
+        previewRequest.incrementAndGet();
         if(e.getSource() == this.cancel){
             this.halftoneSize = -1;
             this.success = false;
         }else if(e.getSource() == this.ok){
-            // Update label to please wait
-            final JDialog busy = new JDialog();
-            final JOptionPane optionPane = new JOptionPane("Calculating, please wait.", JOptionPane.INFORMATION_MESSAGE, JOptionPane.DEFAULT_OPTION, null, new Object[]{}, null);
-            busy.setTitle("Message");
-            busy.setModal(true);
-            busy.setContentPane(optionPane);
-            busy.setDefaultCloseOperation(JDialog.DO_NOTHING_ON_CLOSE);
-            busy.pack();
-            
-            class DoHalftoneThread extends Thread {
-                public void run() {
-                    halftone = image.toHalftone(halftoneSize);
-                    busy.dispose();
-                }
-            }
-            (new DoHalftoneThread()).start();
-            busy.setVisible(true);
             this.success = true;
         }
         this.setVisible(false);
@@ -27,6 +27,7 @@ import java.awt.GridLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.image.BufferedImage;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.imageio.ImageIO;
 import javax.jnlp.FileContents;
@@ -134,7 +135,7 @@ class ImageTextPanel extends ComicBookPanel implements ActionListener{
     }
 
     public void actionPerformed(ActionEvent e) {
-        ComicPage page = comic.getPage(state.getPage());
+        final ComicPage page = comic.getPage(state.getPage());
         Layer layer = page.getLayer(state.getLayer());
         String command = e.getActionCommand();
            if(command.equals(LOAD_IMAGE)) {
@@ -174,7 +175,13 @@ class ImageTextPanel extends ComicBookPanel implements ActionListener{
                 if(iLayer.getType() == null && iLayer.getDefault() != null){
                     HalftoneChooser chooser = new HalftoneChooser(iLayer.getDefault(), iLayer.getHalftoneSize());
                     if(chooser.showDiaglog()){
-                        iLayer.setRGBHalftone(chooser.getHalftone(), chooser.getHalftoneSize());
+                        try {
+                            iLayer.setRGBHalftone(state.submitHalftone(iLayer.getDefault(), chooser.getHalftoneSize()));
+                        } catch (RejectedExecutionException ex) {
+                            String error = "Too many halftones are being calculated, please wait.";
+                            JOptionPane.showMessageDialog(null, error, "Error", JOptionPane.ERROR_MESSAGE);
+                            return;
+                        }
                         iLayer.setType(ImageLayer.RGB_HALFTONE);
                         highlightsChanged = true;
                         state.repaint();
@@ -182,7 +189,13 @@ class ImageTextPanel extends ComicBookPanel implements ActionListener{
                 }else if(iLayer.getType() == ImageLayer.GREYSCALE){    
                     HalftoneChooser chooser = new HalftoneChooser(iLayer.getGreyscale(), iLayer.getHalftoneSize());
                     if(chooser.showDiaglog()){
-                        iLayer.setBWHalftone(chooser.getHalftone(), chooser.getHalftoneSize());
+                        try {
+                            iLayer.setBWHalftone(state.submitHalftone(iLayer.getGreyscale(), chooser.getHalftoneSize()));
+                        } catch (RejectedExecutionException ex) {
+                            String error = "Too many halftones are being calculated, please wait.";
+                            JOptionPane.showMessageDialog(null, error, "Error", JOptionPane.ERROR_MESSAGE);
+                            return;
+                        }
                         iLayer.setType(ImageLayer.BW_HALFTONE);
                         highlightsChanged = true;
                         state.repaint();
@@ -208,7 +221,7 @@ class ImageTextPanel extends ComicBookPanel implements ActionListener{
                     // Update the GUI with the selected text color
                     public void stateChanged(ChangeEvent e) {
                         tLayer.TEXT_PAINT = colorChooser.getColor();
-                        state.repaint();
+                        state.repaintPage(page);
                     }
                 };
                 tLayer.TEXT_PAINT = colorChooser.showDialog(this, "Select Text Color", listener);
@@ -222,7 +235,7 @@ class ImageTextPanel extends ComicBookPanel implements ActionListener{
                     // Update the GUI with the selected background color
                     public void stateChanged(ChangeEvent e) {
                         tLayer.BACKGROUND_PAINT = colorChooser.getColor();
-                        state.repaint();
+                        state.repaintPage(page);
                     }
                 };
                 tLayer.BACKGROUND_PAINT = colorChooser.showDialog(this, "Select Background Color", listener);
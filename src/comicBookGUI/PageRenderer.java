@@ -0,0 +1,145 @@
+ /*
+  * Comic Book Creator - A program for creating a comic book photo album.
+  * Copyright (C) 2013  Alastair Crowe
+  *
+  * This code is free software; you can redistribute it and/or modify it
+  * under the terms of the GNU General Public License version 2 only, as
+  * published by the Free Software Foundation.
+  *
+  * This code is distributed in the hope that it will be useful, but WITHOUT
+  * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+  * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+  * version 2 for more details.
+  
+  * You should have received a copy of the GNU General Public License version
+  * 2 along with this work; if not, write to the Free Software Foundation,
+  * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+  *
+  * Please contact comicbookhelp@gmail.com if you need additional information
+  * or have any questions.
+  */
+package comicBookGUI;
+
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+import javax.swing.JComponent;
+
+import comicBookModel.ComicPage;
+
+/**
+ * A PageRenderer draws frames of a ComicPage on its own thread, so the 
+ * editor stays responsive while a frame is drawn. Frames are double 
+ * buffered, the editor draws the last finished frame while the next frame
+ * is drawn into the other buffer. Requests made while a frame is being 
+ * drawn are combined into the next frame, so frames are dropped rather 
+ * than queued when they take longer than the input which causes them.
+ */
+class PageRenderer implements Runnable {
+    // The component repainted when a frame is finished
+    private final JComponent component;
+    // The latest request, guarded by this
+    private ComicPage page;
+    private int active;
+    private boolean draft;
+    private boolean requested = false;
+    // The finished frame and the frame being drawn, and the area of each
+    // which is out of date. Guarded by this.
+    private BufferedImage front, back;
+    private Rectangle frontDamage, backDamage;
+    /**
+     * Creates a PageRenderer, and starts its thread.
+     * @param component The component repainted when a frame is finished
+     */
+    PageRenderer(JComponent component){
+        this.component = component;
+        Thread thread = new Thread(this, "Page Renderer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    /**
+     * Requests a frame of the page, while the Layer at the specified index
+     * is being edited. Only the area which has changed is drawn again.
+     * @param snapshot A snapshot of the page, which is not changed later
+     * @param active The index of the Layer being edited
+     * @param draft True if the Layer being edited is being dragged, so is 
+     * drawn as a draft
+     * @param area The area of the page which has changed since the last 
+     * request
+     * @see ComicPage#snapshot()
+     * @see ComicPage#render(Graphics2D, Rectangle, int, boolean)
+     */
+    synchronized void request(ComicPage snapshot, int active, boolean draft, Rectangle area){
+        this.page = snapshot;
+        this.active = active;
+        this.draft = draft;
+        this.frontDamage = union(frontDamage, area);
+        this.backDamage = union(backDamage, area);
+        this.requested = true;
+        notifyAll();
+    }
+    /**
+     * Draws the last finished frame at (0, 0) of the Graphics. Nothing is
+     * drawn before the first frame is finished.
+     */
+    synchronized void drawFrame(Graphics g){
+        if(front != null){
+            g.drawImage(front, 0, 0, null);
+        }
+    }
+    /**
+     * Draws the requested frames until the program exits.
+     */
+    public void run(){
+        while(true){
+            ComicPage page;
+            int active;
+            boolean draft;
+            BufferedImage frame;
+            Rectangle area;
+            synchronized(this){
+                while(!requested){
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                requested = false;
+                page = this.page;
+                active = this.active;
+                draft = this.draft;
+                if(back == null || back.getWidth() != page.getWidth() || back.getHeight() != page.getHeight()){
+                    back = new BufferedImage(page.getWidth(), page.getHeight(), BufferedImage.TYPE_INT_RGB);
+                    backDamage = new Rectangle(0, 0, page.getWidth(), page.getHeight());
+                }
+                frame = back;
+                area = backDamage;
+                backDamage = null;
+            }
+            if(area == null){
+                continue;
+            }
+            Graphics2D g = frame.createGraphics();
+            page.render(g, area, active, draft);
+            g.dispose();
+            // Show the new frame, the old frame is drawn into next
+            synchronized(this){
+                back = front;
+                front = frame;
+                Rectangle damage = frontDamage;
+                frontDamage = backDamage;
+                backDamage = damage;
+            }
+            component.repaint(area);
+        }
+    }
+    /**
+     * Returns the union of the two Rectangles, either of which may be null.
+     */
+    private static Rectangle union(Rectangle a, Rectangle b){
+        return a == null ? b : b == null ? a : a.union(b);
+    }
+}
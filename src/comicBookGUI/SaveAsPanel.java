@@ -86,7 +86,7 @@ class SaveAsPanel extends ComicBookPanel implements ActionListener {
         try {
             // Convert the image to an input stream of requested extension
             ComicPage page = comic.getPage(state.getPage());
-            BufferedImage image = page.toImage();
+            BufferedImage image = page.toImage(true);
             ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
             ImageIO.write(image, extension, outputStream);
             InputStream inputStream = new ByteArrayInputStream(outputStream.toByteArray());
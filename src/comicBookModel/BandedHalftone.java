@@ -0,0 +1,119 @@
+ /*
+  * Comic Book Creator - A program for creating a comic book photo album.
+  * Copyright (C) 2013  Alastair Crowe
+  *
+  * This code is free software; you can redistribute it and/or modify it
+  * under the terms of the GNU General Public License version 2 only, as
+  * published by the Free Software Foundation.
+  *
+  * This code is distributed in the hope that it will be useful, but WITHOUT
+  * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+  * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+  * version 2 for more details.
+  
+  * You should have received a copy of the GNU General Public License version
+  * 2 along with this work; if not, write to the Free Software Foundation,
+  * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+  *
+  * Please contact comicbookhelp@gmail.com if you need additional information
+  * or have any questions.
+  */
+package comicBookModel;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.IOException;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+/**
+ * A BandedHalftone applies the lattice halftone of 
+ * PositionedImage#toLatticeHalftone(int, boolean) to images too large to hold
+ * in memory. The image is read, halftoned and written a band of rows at a 
+ * time, so only one band (and a margin of rows around it) is held at once.
+ * The result is the same as halftoning the whole image.
+ * @see PositionedImage#toLatticeHalftone(int, boolean)
+ */
+public class BandedHalftone {
+    private final int size;
+    private final int bandHeight;
+    private final int imageType;
+    private final boolean parallel;
+    // The rows either side of a band which the dots and cells reach into
+    private final int margin;
+    /**
+     * Creates a BandedHalftone.
+     * @param size Height and width of each halftone area
+     * @param bandHeight The number of rows written at a time
+     * @param imageType PositionedImage.TYPE_BYTE_GRAY for black and white
+     * halftone or PositionedImage.TYPE_INT_RGB for red, green and blue
+     * @param parallel True to draw each band in parallel
+     * @throws IllegalArgumentException If size or bandHeight is less than 1 or
+     * the imageType is neither PositionedImage.TYPE_BYTE_GRAY or 
+     * PositionedImage.TYPE_INT_RGB
+     */
+    public BandedHalftone(int size, int bandHeight, int imageType, boolean parallel){
+        if(size < 1 || bandHeight < 1 || 
+           (imageType != PositionedImage.TYPE_BYTE_GRAY &&
+            imageType != PositionedImage.TYPE_INT_RGB)){
+            throw new IllegalArgumentException();
+        }
+        this.size = size;
+        this.bandHeight = bandHeight;
+        this.imageType = imageType;
+        this.parallel = parallel;
+        // Dots within size + 1 rows can reach the band, and their cells 
+        // reach a further size / 2 rows
+        this.margin = 2 * size + 2;
+    }
+    /**
+     * Reads the first image from reader, halftones it and writes it to 
+     * writer. The input and output of both must already be set. The writer
+     * must be able to write an empty image and replace its pixels, as the 
+     * TIFF writer can.
+     * @throws IllegalArgumentException If the writer cannot write an empty 
+     * image and replace its pixels
+     * @throws IOException If reading or writing fails
+     */
+    public void halftone(ImageReader reader, ImageWriter writer) throws IOException {
+        if(!writer.canWriteEmpty()){
+            throw new IllegalArgumentException();
+        }
+        int width = reader.getWidth(0);
+        int height = reader.getHeight(0);
+        HalftoneScreen[] screens = PositionedImage.latticeScreens(size, imageType);
+        ImageWriteParam writeParam = writer.getDefaultWriteParam();
+        writer.prepareWriteEmpty(null, ImageTypeSpecifier.createFromBufferedImageType(imageType), 
+                width, height, null, null, writeParam);
+        if(!writer.canReplacePixels(0)){
+            writer.abort();
+            throw new IllegalArgumentException();
+        }
+        ImageReadParam readParam = reader.getDefaultReadParam();
+        for(int startRow = 0; startRow < height; startRow += bandHeight){
+            int endRow = Math.min(height, startRow + bandHeight);
+            // Read the band with the margin either side of it
+            int top = Math.max(0, startRow - margin);
+            int bottom = Math.min(height, endRow + margin);
+            readParam.setSourceRegion(new Rectangle(0, top, width, bottom - top));
+            BufferedImage read = reader.read(0, readParam);
+            PositionedImage source = new PositionedImage(read, imageType);
+            read = null;
+            PositionedImage band = new PositionedImage(width, bottom - top, imageType);
+            source.drawScreens(screens, band, startRow - top, endRow - top, top, height, parallel);
+            // Write only the rows of the band
+            Raster rows = band.getRaster().createChild(0, startRow - top, width, 
+                    endRow - startRow, 0, 0, null);
+            writer.prepareReplacePixels(0, new Rectangle(0, startRow, width, endRow - startRow));
+            ImageWriteParam replaceParam = writer.getDefaultWriteParam();
+            replaceParam.setDestinationOffset(new Point(0, startRow));
+            writer.replacePixels(rows, replaceParam);
+            writer.endReplacePixels();
+        }
+        writer.endWriteEmpty();
+    }
+}
@@ -43,6 +43,8 @@ public class Border extends Polygon {
     
     private int grid = 1;
     private boolean gridActive = false;
+    // Counts the changes to the points
+    private int modCount = 0;
     /**
      * Constructs a Border from the specified parameters. The Border must have
      * at least 3 points and only non-negative coordinates are allowed. The
@@ -75,6 +77,17 @@ public class Border extends Polygon {
             }
         }
     }
+    /**
+     * Constructs a copy of the specified Border, including its grid.
+     */
+    Border(Border border){
+        // Not checked, as translating may have moved points out of bounds
+        super(border.xpoints, border.ypoints, border.npoints);
+        this.maxX = border.maxX;
+        this.maxY = border.maxY;
+        this.grid = border.grid;
+        this.gridActive = border.gridActive;
+    }
     /**
      * Activates a grid of specified spacing such that new points must lay on
      * the grid.
@@ -108,6 +121,14 @@ public class Border extends Polygon {
     public boolean gridActive(){
         return this.gridActive;
     }
+    /**
+     * Returns the number of times the points of this Border have changed, 
+     * so users can tell when it needs to be redrawn. The grid is not drawn,
+     * so changing it is not counted.
+     */
+    int getModCount(){
+        return this.modCount;
+    }
     /**
      * Unimplimented.
      * @see java.awt.Polygon#reset()
@@ -129,6 +150,27 @@ public class Border extends Polygon {
         }
         addPoint(point.x, point.y);
     }
+    /**
+     * @see java.awt.Polygon#addPoint(int, int)
+     */
+    public void addPoint(int x, int y){
+        super.addPoint(x, y);
+        modCount++;
+    }
+    /**
+     * @see java.awt.Polygon#translate(int, int)
+     */
+    public void translate(int deltaX, int deltaY){
+        super.translate(deltaX, deltaY);
+        modCount++;
+    }
+    /**
+     * @see java.awt.Polygon#invalidate()
+     */
+    public void invalidate(){
+        super.invalidate();
+        modCount++;
+    }
     /**
      * @param index The index of the required Point.
      * @return The Point at the specified index.
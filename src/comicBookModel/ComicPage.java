@@ -20,10 +20,16 @@
   */
 package comicBookModel;
 
+import java.awt.AlphaComposite;
+import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Paint;
+import java.awt.Rectangle;
+import java.awt.Shape;
 import java.awt.image.BufferedImage;
 import java.util.LinkedList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * A ComicPage is an ordered list of one or more Layers. The Layers will all be
@@ -37,7 +43,19 @@ public class ComicPage {
     private final int WIDTH;
     private final int HEIGHT;
     private LinkedList<Layer> LAYERS = new LinkedList<Layer>();
-    private Paint BACKGROUND;
+    // The pool the images of modified Layers are drawn in
+    private static final ForkJoinPool POOL = new ForkJoinPool();
+    private Paint BACKGROUND = Color.WHITE;
+    // Composites of the Layers below and above the Layer being edited, so 
+    // only that Layer is redrawn while it changes
+    private final Composite BELOW;
+    private final Composite ABOVE;
+    // The last copy returned by snapshot()
+    private ComicPage SNAPSHOT;
+    // The Layers, their versions and bounds as last seen by getDamage()
+    private Layer[] SEEN_LAYERS = new Layer[0];
+    private int[] SEEN_VERSIONS = new int[0];
+    private Rectangle[] SEEN_BOUNDS = new Rectangle[0];
     /**
      * Creates a ComicPage with the specified width and height, with an initial blank
      * ImageLayer at index 0. All Layers added to this ComicPage are of this width
@@ -48,20 +66,52 @@ public class ComicPage {
     ComicPage(int width, int height){
         this.WIDTH = width;
         this.HEIGHT = height;
+        this.BELOW = new Composite(true);
+        this.ABOVE = new Composite(false);
         addImageLayer();
     }
+    /**
+     * Creates a copy of the ComicPage for snapshot(), with the copies of its
+     * Layers. The composites are shared with the previous copy.
+     */
+    private ComicPage(ComicPage page, LinkedList<Layer> layers){
+        this.WIDTH = page.WIDTH;
+        this.HEIGHT = page.HEIGHT;
+        this.BACKGROUND = page.BACKGROUND;
+        this.LAYERS = layers;
+        ComicPage previous = page.SNAPSHOT;
+        this.BELOW = previous == null ? new Composite(true) : previous.BELOW;
+        this.ABOVE = previous == null ? new Composite(false) : previous.ABOVE;
+    }
+    /**
+     * Returns a copy of this ComicPage which does not change when this 
+     * ComicPage does, so it can be drawn on another thread. Copies of Layers
+     * which have not changed since the last snapshot are reused, along with
+     * their cached images, and the composites are shared with the last 
+     * snapshot. So only one thread at a time may draw the snapshots of a 
+     * ComicPage.
+     * @see Layer#snapshot()
+     */
+    public ComicPage snapshot(){
+        LinkedList<Layer> layers = new LinkedList<Layer>();
+        for(Layer layer : LAYERS){
+            layers.add(layer.snapshot());
+        }
+        SNAPSHOT = new ComicPage(this, layers);
+        return SNAPSHOT;
+    }
     /**
      * Returns the width of this ComicPage
      * @return
      */
-    int getWidth() {
+    public int getWidth() {
         return WIDTH;
     }
     /**
      * Returns the height of this ComicPage
      * @return
      */
-    int getHeight() {
+    public int getHeight() {
         return HEIGHT;
     }
     /**
@@ -116,19 +166,249 @@ public class ComicPage {
      * @return
      */
     public BufferedImage toImage(){
-        // Create white image
+        return toImage(false);
+    }
+    /**
+     * Returns this ComicPage as a BufferedImage. The image is the same 
+     * whether or not the Layers are drawn in parallel.
+     * @param parallel If true the Layers which have been modified are drawn
+     * in parallel, before being layered in order
+     */
+    public BufferedImage toImage(boolean parallel){
+        if(parallel){
+            cacheLayers(0, noOfLayers());
+        }
         BufferedImage newImage = new BufferedImage(WIDTH, HEIGHT, 
                 BufferedImage.TYPE_INT_RGB);
         Graphics2D g = newImage.createGraphics();
+        render(g, new Rectangle(0, 0, WIDTH, HEIGHT));
+        g.dispose();
+        return newImage;
+    }
+    /**
+     * Returns this ComicPage as a BufferedImage, while the Layer at the 
+     * specified index is being edited.
+     * @param active The index of the Layer being edited
+     * @throws IndexOutOfBoundsException If there is no Layer at the index
+     * @see #render(Graphics2D, Rectangle, int)
+     */
+    public BufferedImage toImage(int active){
+        BufferedImage newImage = new BufferedImage(WIDTH, HEIGHT, 
+                BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = newImage.createGraphics();
+        render(g, new Rectangle(0, 0, WIDTH, HEIGHT), active);
+        g.dispose();
+        return newImage;
+    }
+    /**
+     * Draws the area of this ComicPage within clip onto the Graphics2D. 
+     * Layers which have not changed are not redrawn.
+     * @param g The Graphics2D to draw on, in page coordinates
+     * @param clip The area of the page to draw
+     */
+    public void render(Graphics2D g, Rectangle clip){
+        Shape oldClip = g.getClip();
+        g.clip(clip);
         g.setPaint(BACKGROUND);
-        g.fillRect(0, 0, WIDTH, HEIGHT);
+        g.fill(clip);
         // Draw the layers one at a time, the higher the index Layers on top of
         // the lower.
         for(int index = 0; index < noOfLayers(); index++){
             Layer layer = getLayer(index);
-            g.drawImage(layer.toImage(), 0, 0, null);
+            layer.setHighlighted(false);
+            layer.setDraft(false);
+            layer.drawCachedImage(g);
+        }
+        g.setClip(oldClip);
+    }
+    /**
+     * Draws the area of this ComicPage within clip onto the Graphics2D, while
+     * the Layer at the specified index is being edited. Its border is drawn 
+     * dashed. The Layers below and above it are drawn from composites which
+     * are only redrawn when one of those Layers changes, so the cost does not
+     * grow with the number of Layers. Edges drawn over translucent edges in 
+     * the composite above may differ from render(Graphics2D, Rectangle) by 
+     * rounding, so this should not be used for saving.
+     * @param g The Graphics2D to draw on, in page coordinates
+     * @param clip The area of the page to draw
+     * @param active The index of the Layer being edited
+     * @throws IndexOutOfBoundsException If there is no Layer at the index
+     */
+    public void render(Graphics2D g, Rectangle clip, int active){
+        render(g, clip, active, false);
+    }
+    /**
+     * Draws the area of this ComicPage within clip onto the Graphics2D, while
+     * the Layer at the specified index is being edited. If draft is true the
+     * Layer is being dragged, and is drawn quickly at a lower quality. 
+     * @param g The Graphics2D to draw on, in page coordinates
+     * @param clip The area of the page to draw
+     * @param active The index of the Layer being edited
+     * @param draft True if the Layer being edited is drawn as a draft
+     * @throws IndexOutOfBoundsException If there is no Layer at the index
+     * @see #render(Graphics2D, Rectangle, int)
+     */
+    public void render(Graphics2D g, Rectangle clip, int active, boolean draft){
+        Layer layer = getLayer(active);
+        for(int index = 0; index < noOfLayers(); index++){
+            getLayer(index).setHighlighted(index == active);
+            getLayer(index).setDraft(index == active && draft);
+        }
+        cacheLayers(0, noOfLayers());
+        Shape oldClip = g.getClip();
+        g.clip(clip);
+        g.drawImage(BELOW.get(this, 0, active), 0, 0, null);
+        layer.drawCachedImage(g);
+        if(active + 1 < noOfLayers()){
+            g.drawImage(ABOVE.get(this, active + 1, noOfLayers()), 0, 0, null);
+        }
+        g.setClip(oldClip);
+    }
+    /**
+     * Returns the area of this ComicPage which has changed since this was 
+     * last called, or null if nothing has. This is the old and new bounds of
+     * each Layer which has been changed, added, removed or moved.
+     * @see Layer#getBounds()
+     */
+    public Rectangle getDamage(){
+        Rectangle damage = null;
+        int n = noOfLayers();
+        Layer[] layers = new Layer[n];
+        int[] versions = new int[n];
+        Rectangle[] bounds = new Rectangle[n];
+        for(int i = 0; i < Math.max(n, SEEN_LAYERS.length); i++){
+            boolean seen = i < SEEN_LAYERS.length;
+            if(i < n){
+                layers[i] = getLayer(i);
+                versions[i] = layers[i].getVersion();
+                if(seen && layers[i] == SEEN_LAYERS[i] && versions[i] == SEEN_VERSIONS[i]){
+                    bounds[i] = SEEN_BOUNDS[i];
+                    continue;
+                }
+                bounds[i] = layers[i].getBounds();
+                damage = union(damage, bounds[i]);
+            }
+            if(seen){
+                damage = union(damage, SEEN_BOUNDS[i]);
+            }
+        }
+        SEEN_LAYERS = layers;
+        SEEN_VERSIONS = versions;
+        SEEN_BOUNDS = bounds;
+        return damage;
+    }
+    /**
+     * Draws the images of the Layers from start (inclusive) to end 
+     * (exclusive) which have been modified in parallel, so they are cached
+     * when they are layered.
+     * @see Layer#toCachedImage()
+     */
+    private void cacheLayers(int start, int end){
+        LinkedList<Layer> modified = new LinkedList<Layer>();
+        for(int index = start; index < end; index++){
+            Layer layer = getLayer(index);
+            if(!layer.isCached()){
+                modified.add(layer);
+            }
+        }
+        // A single Layer is drawn as quickly when it is layered
+        if(modified.size() > 1){
+            Layer[] layers = modified.toArray(new Layer[modified.size()]);
+            POOL.invoke(new CacheLayers(layers, 0, layers.length));
+        }
+    }
+    /**
+     * A task which draws the cached images of a range of Layers, splitting
+     * the range until there is one Layer per task.
+     */
+    @SuppressWarnings("serial")
+    private static class CacheLayers extends RecursiveAction {
+        private final Layer[] layers;
+        private final int start, end;
+        CacheLayers(Layer[] layers, int start, int end){
+            this.layers = layers;
+            this.start = start;
+            this.end = end;
+        }
+        protected void compute(){
+            if(end - start == 1){
+                layers[start].toCachedImage();
+            }else{
+                int middle = (start + end) >>> 1;
+                invokeAll(new CacheLayers(layers, start, middle), 
+                        new CacheLayers(layers, middle, end));
+            }
+        }
+    }
+    /**
+     * Returns the union of the two Rectangles, either of which may be null.
+     */
+    private static Rectangle union(Rectangle a, Rectangle b){
+        return a == null ? b : b == null ? a : a.union(b);
+    }
+    /**
+     * A Composite is an image of a range of this ComicPages Layers drawn on
+     * top of each other, which is kept until one of those Layers changes.
+     */
+    private static class Composite {
+        // True if the background is drawn under the Layers
+        private final boolean background;
+        private BufferedImage image;
+        // The Layers drawn into the image, and their versions when drawn
+        private Layer[] layers = new Layer[0];
+        private int[] versions = new int[0];
+        Composite(boolean background){
+            this.background = background;
+        }
+        /**
+         * Returns the composite of the Layers from start (inclusive) to end
+         * (exclusive), redrawing it only if the Layers have changed. The 
+         * image must not be changed by the caller.
+         */
+        BufferedImage get(ComicPage page, int start, int end){
+            if(!isValid(page, start, end)){
+                redraw(page, start, end);
+            }
+            return image;
+        }
+        /**
+         * Returns true if the image holds exactly the Layers from start to 
+         * end, at their current versions.
+         */
+        private boolean isValid(ComicPage page, int start, int end){
+            if(image == null || layers.length != end - start){
+                return false;
+            }
+            boolean valid = true;
+            for(int i = 0; i < layers.length; i++){
+                Layer layer = page.getLayer(start + i);
+                // Check every version, so each Layer notices its changes
+                valid &= layers[i] == layer && versions[i] == layer.getVersion();
+            }
+            return valid;
+        }
+        private void redraw(ComicPage page, int start, int end){
+            if(image == null){
+                int type = background ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB_PRE;
+                image = new BufferedImage(page.WIDTH, page.HEIGHT, type);
+            }
+            Graphics2D g = image.createGraphics();
+            if(background){
+                g.setPaint(page.BACKGROUND);
+                g.fillRect(0, 0, page.WIDTH, page.HEIGHT);
+            }else{
+                g.setComposite(AlphaComposite.Clear);
+                g.fillRect(0, 0, page.WIDTH, page.HEIGHT);
+                g.setComposite(AlphaComposite.SrcOver);
+            }
+            layers = new Layer[end - start];
+            versions = new int[end - start];
+            for(int i = 0; i < layers.length; i++){
+                layers[i] = page.getLayer(start + i);
+                versions[i] = layers[i].getVersion();
+                layers[i].drawCachedImage(g);
+            }
+            g.dispose();
         }
-        // Return the image
-        return newImage;
     }
 }
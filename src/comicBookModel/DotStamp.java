@@ -0,0 +1,129 @@
+ /*
+  * Comic Book Creator - A program for creating a comic book photo album.
+  * Copyright (C) 2013  Alastair Crowe
+  *
+  * This code is free software; you can redistribute it and/or modify it
+  * under the terms of the GNU General Public License version 2 only, as
+  * published by the Free Software Foundation.
+  *
+  * This code is distributed in the hope that it will be useful, but WITHOUT
+  * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+  * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+  * version 2 for more details.
+  
+  * You should have received a copy of the GNU General Public License version
+  * 2 along with this work; if not, write to the Free Software Foundation,
+  * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+  *
+  * Please contact comicbookhelp@gmail.com if you need additional information
+  * or have any questions.
+  */
+package comicBookModel;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A DotStamp is a pre-rasterized, anti-aliased halftone dot. Each pixel of
+ * the stamp holds the strength the dot adds to that pixel, in proportion to
+ * how much of the pixel the dot covers. DotStamps are cached by their radius
+ * and sub-pixel offset, both rounded to a fraction of a pixel, so drawing a
+ * dot is a single blit of a stamp which has already been calculated.
+ * @see PositionedImage#addStamp(DotStamp, int, int, int, int, int)
+ */
+class DotStamp {
+    // The steps per pixel the radius and offsets are rounded to
+    private static final int RADIUS_STEPS = 8;
+    private static final int OFFSET_STEPS = 4;
+    // The sub-samples per pixel, along each axis, used to measure coverage
+    private static final int SAMPLES = 8;
+    // The strength added to a fully covered pixel, half of each channel
+    static final int STRENGTH = 128;
+    // Every DotStamp calculated so far, keyed by radius and offset steps
+    private static final ConcurrentHashMap<Integer, DotStamp> CACHE = new ConcurrentHashMap<Integer, DotStamp>();
+    // The stamp covers the pixels -reach to reach from its centre pixel
+    private final int reach;
+    // The strengths of the stamp row by row, from 0 to STRENGTH
+    private final byte[] strengths;
+    /**
+     * Creates a DotStamp of the radius with its centre offset from the centre
+     * pixel by the specified amounts.
+     */
+    private DotStamp(double r, double offsetX, double offsetY){
+        this.reach = (int) Math.ceil(r + 0.5d);
+        int side = 2 * reach + 1;
+        this.strengths = new byte[side * side];
+        double r2 = r * r;
+        for(int j = 0; j < side; j++){
+            for(int i = 0; i < side; i++){
+                // Count the sub-samples of this pixel inside the circle
+                int inside = 0;
+                for(int sj = 0; sj < SAMPLES; sj++){
+                    double dy = j - reach + (sj + 0.5d) / SAMPLES - 0.5d - offsetY;
+                    for(int si = 0; si < SAMPLES; si++){
+                        double dx = i - reach + (si + 0.5d) / SAMPLES - 0.5d - offsetX;
+                        if(dx * dx + dy * dy <= r2){
+                            inside++;
+                        }
+                    }
+                }
+                strengths[j * side + i] = (byte) Math.round((double) STRENGTH * inside / (SAMPLES * SAMPLES));
+            }
+        }
+    }
+    /**
+     * Returns the DotStamp for a dot of radius r centred at (x,y), where the
+     * stamp is drawn centred on the pixel nearest to (x,y). The radius and
+     * the offset to the pixel are rounded to a fraction of a pixel. Null is
+     * returned if the radius rounds to 0.
+     * @see #centre(double)
+     */
+    static DotStamp get(double r, double x, double y){
+        int radiusStep = (int) Math.round(r * RADIUS_STEPS);
+        if(radiusStep <= 0){
+            return null;
+        }
+        int offsetX = offsetStep(x);
+        int offsetY = offsetStep(y);
+        Integer key = (radiusStep * OFFSET_STEPS + offsetX) * OFFSET_STEPS + offsetY;
+        DotStamp stamp = CACHE.get(key);
+        if(stamp == null){
+            // Offset steps are centred within each fraction of a pixel
+            stamp = new DotStamp((double) radiusStep / RADIUS_STEPS, 
+                                 (offsetX + 0.5d) / OFFSET_STEPS - 0.5d,
+                                 (offsetY + 0.5d) / OFFSET_STEPS - 0.5d);
+            DotStamp existing = CACHE.putIfAbsent(key, stamp);
+            if(existing != null){
+                stamp = existing;
+            }
+        }
+        return stamp;
+    }
+    /**
+     * Returns the pixel nearest to the coordinate, which is the pixel a 
+     * DotStamp for that coordinate is centred on.
+     */
+    static int centre(double coord){
+        return (int) Math.floor(coord + 0.5d);
+    }
+    /**
+     * Returns which fraction of its pixel the coordinate lies in.
+     */
+    private static int offsetStep(double coord){
+        int step = (int) Math.floor((coord - centre(coord) + 0.5d) * OFFSET_STEPS);
+        return step < 0 ? 0 : step >= OFFSET_STEPS ? OFFSET_STEPS - 1 : step;
+    }
+    /**
+     * Returns how many pixels the stamp reaches from its centre pixel, in 
+     * every direction.
+     */
+    int getReach(){
+        return reach;
+    }
+    /**
+     * Returns the strength of the stamp, from 0 to STRENGTH, at the pixel
+     * (i,j) from its centre pixel, where i and j are between -reach and reach.
+     */
+    int getStrength(int i, int j){
+        return strengths[(j + reach) * (2 * reach + 1) + i + reach] & 0xFF;
+    }
+}
@@ -0,0 +1,268 @@
+ /*
+  * Comic Book Creator - A program for creating a comic book photo album.
+  * Copyright (C) 2013  Alastair Crowe
+  *
+  * This code is free software; you can redistribute it and/or modify it
+  * under the terms of the GNU General Public License version 2 only, as
+  * published by the Free Software Foundation.
+  *
+  * This code is distributed in the hope that it will be useful, but WITHOUT
+  * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+  * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+  * version 2 for more details.
+  
+  * You should have received a copy of the GNU General Public License version
+  * 2 along with this work; if not, write to the Free Software Foundation,
+  * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+  *
+  * Please contact comicbookhelp@gmail.com if you need additional information
+  * or have any questions.
+  */
+package comicBookModel;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+/**
+ * A HalftoneJob is a handle to the lattice or CMYK halftone, or the threshold
+ * screening, of an image being calculated by a HalftoneService. The halftone
+ * is first looked up in the VariantCache, and stored there once drawn. A 
+ * lattice halftone or screening is drawn a tile of rows at a time. Between 
+ * tiles the job reports its progress to its Listener, and stops if it has 
+ * been cancelled. A CMYK halftone is drawn in one go, so it can only be 
+ * cancelled before it starts.
+ * @see HalftoneService
+ * @see PositionedImage#toLatticeHalftone(int, boolean)
+ * @see PositionedImage#toCMYKHalftone(int, boolean)
+ * @see PositionedImage#toScreened(ThresholdMatrix)
+ */
+public class HalftoneJob implements Future<PositionedImage> {
+    // The number of rows drawn between each check for cancellation
+    private static final int TILE_HEIGHT = 256;
+    /**
+     * A Listener is told when the progress of a HalftoneJob changes, and 
+     * when it finishes or is cancelled. It is called from the thread 
+     * calculating the halftone. If the job failed, get() throws an 
+     * ExecutionException with the cause once it is done.
+     */
+    public interface Listener {
+        void progressChanged(HalftoneJob job);
+    }
+    private final PositionedImage image;
+    private final int size;
+    private final boolean cmyk;
+    private final ThresholdMatrix matrix;
+    private final Listener listener;
+    private final VariantCache cache;
+    private volatile double progress = 0d;
+    private final FutureTask<PositionedImage> task = new FutureTask<PositionedImage>(
+            new Callable<PositionedImage>(){
+                public PositionedImage call() throws InterruptedException {
+                    return halftone();
+                }
+            }){
+        protected void done(){
+            listener.progressChanged(HalftoneJob.this);
+        }
+    };
+    /**
+     * Creates a HalftoneJob, which is started by a HalftoneService.
+     * @param image The image to be halftoned
+     * @param size Height and width of each halftone area
+     * @param cmyk True for a CMYK halftone, false for a lattice halftone
+     * @param listener The Listener told of the jobs progress
+     * @param cache The VariantCache the halftone is kept in, or null
+     * @throws IllegalArgumentException If the image or listener is null or
+     * size is less than 1
+     */
+    HalftoneJob(PositionedImage image, int size, boolean cmyk, Listener listener, VariantCache cache){
+        this(image, size, cmyk, null, listener, cache);
+    }
+    /**
+     * Creates a HalftoneJob screening the image, which is started by a 
+     * HalftoneService.
+     * @param image The image to be screened
+     * @param matrix The ThresholdMatrix to screen with
+     * @param listener The Listener told of the jobs progress
+     * @param cache The VariantCache the screened image is kept in, or null
+     * @throws IllegalArgumentException If the image, matrix or listener is 
+     * null
+     */
+    HalftoneJob(PositionedImage image, ThresholdMatrix matrix, Listener listener, VariantCache cache){
+        // A null matrix is given size 0, which is rejected
+        this(image, matrix == null ? 0 : matrix.getSize(), false, matrix, listener, cache);
+    }
+    private HalftoneJob(PositionedImage image, int size, boolean cmyk, ThresholdMatrix matrix, 
+            Listener listener, VariantCache cache){
+        if(image == null || listener == null || size < 1){
+            throw new IllegalArgumentException();
+        }
+        this.image = image;
+        this.size = size;
+        this.cmyk = cmyk;
+        this.matrix = matrix;
+        this.listener = listener;
+        this.cache = cache;
+    }
+    /**
+     * Returns the VariantCache effect of the lattice halftone of the size, 
+     * for an image of the type.
+     */
+    static String getEffect(int size, int imageType){
+        return "Lattice Halftone " + Arrays.toString(PositionedImage.latticeScreens(size, imageType));
+    }
+    /**
+     * Returns the VariantCache effect of the CMYK halftone of the size.
+     */
+    static String getCMYKEffect(int size){
+        return "CMYK Halftone " + Arrays.toString(PositionedImage.cmykScreens(size));
+    }
+    /**
+     * Returns the VariantCache effect of screening with the ThresholdMatrix.
+     */
+    static String getScreenedEffect(ThresholdMatrix matrix){
+        return "Screened " + matrix.getName();
+    }
+    /**
+     * The task run by the HalftoneService.
+     */
+    Runnable getTask(){
+        return task;
+    }
+    /**
+     * Reads the halftone from the VariantCache, or draws it. A lattice 
+     * halftone is drawn a tile of rows at a time, in parallel within each 
+     * tile.
+     * @throws InterruptedException If the job is cancelled
+     */
+    private PositionedImage halftone() throws InterruptedException {
+        String effect;
+        if(matrix != null){
+            effect = getScreenedEffect(matrix);
+        }else if(cmyk){
+            effect = getCMYKEffect(size);
+        }else{
+            effect = getEffect(size, image.getType());
+        }
+        if(cache != null){
+            PositionedImage cached = cache.get(VariantCache.hash(image), effect);
+            if(cached != null){
+                progress = 1d;
+                return cached;
+            }
+        }
+        PositionedImage pImage;
+        if(matrix != null){
+            pImage = screened();
+        }else if(cmyk){
+            pImage = cmykHalftone();
+        }else{
+            pImage = latticeHalftone();
+        }
+        if(cache != null){
+            cache.put(VariantCache.hash(image), effect, pImage);
+        }
+        return pImage;
+    }
+    /**
+     * Draws the lattice halftone a tile of rows at a time.
+     * @throws InterruptedException If the job is cancelled
+     */
+    private PositionedImage latticeHalftone() throws InterruptedException {
+        int height = image.getHeight();
+        HalftoneScreen[] screens = PositionedImage.latticeScreens(size, image.getType());
+        PositionedImage pImage = image.blankCopy();
+        for(int startRow = 0; startRow < height; startRow += TILE_HEIGHT){
+            if(Thread.interrupted()){
+                throw new InterruptedException();
+            }
+            int endRow = Math.min(height, startRow + TILE_HEIGHT);
+            image.drawScreens(screens, pImage, startRow, endRow, 0, height, true);
+            progress = (double) endRow / height;
+            listener.progressChanged(this);
+        }
+        return pImage;
+    }
+    /**
+     * Draws the CMYK halftone in one go.
+     * @throws InterruptedException If the job is cancelled before it starts
+     */
+    private PositionedImage cmykHalftone() throws InterruptedException {
+        if(Thread.interrupted()){
+            throw new InterruptedException();
+        }
+        PositionedImage pImage = image.toCMYKHalftone(size, true);
+        progress = 1d;
+        return pImage;
+    }
+    /**
+     * Screens the image with the ThresholdMatrix a tile of rows at a time.
+     * @throws InterruptedException If the job is cancelled
+     */
+    private PositionedImage screened() throws InterruptedException {
+        int height = image.getHeight();
+        PositionedImage pImage = new PositionedImage(image.getWidth(), height, image.getType());
+        for(int startRow = 0; startRow < height; startRow += TILE_HEIGHT){
+            if(Thread.interrupted()){
+                throw new InterruptedException();
+            }
+            int endRow = Math.min(height, startRow + TILE_HEIGHT);
+            image.screenRows(matrix, pImage, startRow, endRow);
+            progress = (double) endRow / height;
+            listener.progressChanged(this);
+        }
+        return pImage;
+    }
+    /**
+     * @return The image being halftoned
+     */
+    public PositionedImage getImage(){
+        return this.image;
+    }
+    /**
+     * @return Height and width of each halftone area, or of the 
+     * ThresholdMatrix if this is a screening
+     */
+    public int getSize(){
+        return this.size;
+    }
+    /**
+     * @return True if this is a CMYK halftone
+     */
+    public boolean isCMYK(){
+        return this.cmyk;
+    }
+    /**
+     * @return The ThresholdMatrix the image is screened with, or null if 
+     * this is a halftone
+     */
+    public ThresholdMatrix getMatrix(){
+        return this.matrix;
+    }
+    /**
+     * @return The fraction of the halftone drawn, from 0 to 1
+     */
+    public double getProgress(){
+        return this.progress;
+    }
+    public boolean cancel(boolean mayInterruptIfRunning){
+        return task.cancel(mayInterruptIfRunning);
+    }
+    public boolean isCancelled(){
+        return task.isCancelled();
+    }
+    public boolean isDone(){
+        return task.isDone();
+    }
+    public PositionedImage get() throws InterruptedException, ExecutionException {
+        return task.get();
+    }
+    public PositionedImage get(long timeout, TimeUnit unit) 
+            throws InterruptedException, ExecutionException, TimeoutException {
+        return task.get(timeout, unit);
+    }
+}
@@ -0,0 +1,163 @@
+ /*
+  * Comic Book Creator - A program for creating a comic book photo album.
+  * Copyright (C) 2013  Alastair Crowe
+  *
+  * This code is free software; you can redistribute it and/or modify it
+  * under the terms of the GNU General Public License version 2 only, as
+  * published by the Free Software Foundation.
+  *
+  * This code is distributed in the hope that it will be useful, but WITHOUT
+  * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+  * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+  * version 2 for more details.
+  
+  * You should have received a copy of the GNU General Public License version
+  * 2 along with this work; if not, write to the Free Software Foundation,
+  * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+  *
+  * Please contact comicbookhelp@gmail.com if you need additional information
+  * or have any questions.
+  */
+package comicBookModel;
+
+/**
+ * A HalftoneScreen is a square lattice of halftone dots for one or more
+ * colour channels. The lattice has spacing size and is rotated by an angle
+ * about the point (0,0). Each dot is sized from the mean of the source image
+ * over the size by size cell centred on it, and drawn straight onto the 
+ * target image as an anti-aliased DotStamp, so a screen at any angle is
+ * drawn in a single pass.
+ * @see PositionedImage#toHalftone(int, boolean, boolean, boolean)
+ */
+class HalftoneScreen {
+    private final int size;
+    private final double angle;
+    private final boolean red, green, blue;
+    // The Color added per unit of a DotStamps strength, packed as 0xRRGGBB
+    private final int unit;
+    // The divisor = noOfColors * 255
+    private final double div;
+    // The lattice vectors, (ux, uy) along the rows and (vx, vy) down them
+    private final double ux, uy, vx, vy;
+    /**
+     * Creates a HalftoneScreen.
+     * @param size Height and width of each halftone area
+     * @param angle The angle of the lattice in degrees
+     * @param red True indicates this halftone channel contains red
+     * @param green True indicates this halftone channel contains green
+     * @param blue True indicates this halftone channel contains blue
+     * @throws IllegalArgumentException If size is less than 1 or no channel
+     * is selected.
+     */
+    HalftoneScreen(int size, double angle, boolean red, boolean green, boolean blue){
+        if(size < 1 || !(red || green || blue)){
+            throw new IllegalArgumentException();
+        }
+        this.size = size;
+        this.angle = angle;
+        this.red = red;
+        this.green = green;
+        this.blue = blue;
+        this.unit = (red ? 0x010000 : 0) | (green ? 0x000100 : 0) | (blue ? 0x000001 : 0);
+        this.div = (red ? 255 : 0) + (green ? 255 : 0) + (blue ? 255 : 0);
+        /* Rotating the image by the angle, then halftoning with an upright
+         * lattice, is the same as halftoning with a lattice rotated the other
+         * way. PositionedImage#rotate maps (1,0) to (cos, -sin), so the
+         * lattice vectors here are the inverse rotation.
+         */
+        double rads = Math.toRadians(angle);
+        double cos = angle == 0d ? 1d : Math.cos(rads);
+        double sin = angle == 0d ? 0d : Math.sin(rads);
+        this.ux = size * cos;
+        this.uy = size * sin;
+        this.vx = -size * sin;
+        this.vy = size * cos;
+    }
+    /**
+     * Draws the dots of this screen onto target, sized from source. Only the
+     * parts of the dots between startRow (inclusive) and endRow (exclusive)
+     * are drawn. Dots are only drawn for lattice points on the source image.
+     * @param source The image the dot sizes are taken from
+     * @param target The image the dots are drawn onto, the same size as
+     * source
+     */
+    void draw(PositionedImage source, PositionedImage target, int startRow, int endRow){
+        draw(source, target, startRow, endRow, 0, source.getHeight());
+    }
+    /**
+     * Draws the dots of this screen onto target, where source is a band of
+     * rows of a larger image starting at row offsetY. The lattice stays fixed
+     * to (0,0) of the larger image, so bands drawn separately join up 
+     * exactly. Dot sizes near the edges of the band are only the same as for
+     * the whole image if source includes the rows the cells cover.
+     * @param source The band the dot sizes are taken from
+     * @param target The band the dots are drawn onto, the same size as source
+     * @param startRow The first row of the band to draw
+     * @param endRow The row of the band after the last to draw
+     * @param offsetY The row of the larger image at row 0 of the band
+     * @param imageHeight The height of the larger image
+     */
+    void draw(PositionedImage source, PositionedImage target, int startRow, int endRow,
+            int offsetY, int imageHeight){
+        int width = source.getWidth();
+        SummedAreaTable table = source.getSummedAreaTable();
+        // The radius never exceeds size, so only dots centred within size of
+        // the rows can reach them. The lattice is walked in image rows.
+        int minY = Math.max(0, startRow + offsetY - size - 1);
+        int maxY = Math.min(imageHeight - 1, endRow + offsetY + size);
+        if(minY > maxY || width == 0){
+            return;
+        }
+        // Stamps are centred on the nearest pixel, so include the half pixel
+        double left = -0.5d, right = width - 0.5d;
+        double top = minY - 0.5d, bottom = maxY + 0.5d;
+        // The range of rows of the lattice, from the corners of the region
+        double s2 = (double) size * size;
+        double j0 = (left * vx + top * vy) / s2, j1 = (right * vx + top * vy) / s2;
+        double j2 = (left * vx + bottom * vy) / s2, j3 = (right * vx + bottom * vy) / s2;
+        int startJ = (int) Math.floor(Math.min(Math.min(j0, j1), Math.min(j2, j3)));
+        int endJ = (int) Math.ceil(Math.max(Math.max(j0, j1), Math.max(j2, j3)));
+        for(int j = startJ; j <= endJ; j++){
+            // Find the range of the lattice row within the region
+            double startI = Double.NEGATIVE_INFINITY, endI = Double.POSITIVE_INFINITY;
+            if(ux != 0d){
+                double i0 = (left - j * vx) / ux, i1 = (right - j * vx) / ux;
+                startI = Math.max(startI, Math.min(i0, i1));
+                endI = Math.min(endI, Math.max(i0, i1));
+            }
+            if(uy != 0d){
+                double i0 = (top - j * vy) / uy, i1 = (bottom - j * vy) / uy;
+                startI = Math.max(startI, Math.min(i0, i1));
+                endI = Math.min(endI, Math.max(i0, i1));
+            }
+            for(int i = (int) Math.floor(startI); i <= (int) Math.ceil(endI); i++){
+                double centreX = i * ux + j * vx;
+                double centreY = i * uy + j * vy;
+                int x = DotStamp.centre(centreX);
+                int y = DotStamp.centre(centreY);
+                if(x < 0 || x >= width || y < minY || y > maxY){
+                    continue;
+                }
+                // Calculate the fraction of requested red, green, blue over 
+                // the cell, in rows of the band
+                int bandY = y - offsetY;
+                int cellX = x - size / 2;
+                int cellY = bandY - size / 2;
+                double frac = table.mean(red, green, blue, cellX, cellY, cellX + size, cellY + size) / div;
+                // Calculate the circles radius
+                double radius = size*Math.sqrt(2 * frac / Math.PI);
+                DotStamp stamp = DotStamp.get(radius, centreX, centreY);
+                if(stamp != null){
+                    target.addStamp(stamp, x, bandY, unit, startRow, endRow);
+                }
+            }
+        }
+    }
+    /**
+     * Returns the size, angle and channels of this HalftoneScreen, e.g. 
+     * "8@15.0 RGB".
+     */
+    public String toString(){
+        return size + "@" + angle + " " + (red ? "R" : "") + (green ? "G" : "") + (blue ? "B" : "");
+    }
+}
@@ -0,0 +1,111 @@
+ /*
+  * Comic Book Creator - A program for creating a comic book photo album.
+  * Copyright (C) 2013  Alastair Crowe
+  *
+  * This code is free software; you can redistribute it and/or modify it
+  * under the terms of the GNU General Public License version 2 only, as
+  * published by the Free Software Foundation.
+  *
+  * This code is distributed in the hope that it will be useful, but WITHOUT
+  * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+  * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+  * version 2 for more details.
+  
+  * You should have received a copy of the GNU General Public License version
+  * 2 along with this work; if not, write to the Free Software Foundation,
+  * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+  *
+  * Please contact comicbookhelp@gmail.com if you need additional information
+  * or have any questions.
+  */
+package comicBookModel;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+/**
+ * A HalftoneService calculates halftones in the background, so several
+ * images can be halftoned at the same time while the caller carries on. It 
+ * runs a fixed number of HalftoneJobs at once, and queues a limited number
+ * more. The halftones are kept in the default VariantCache.
+ * @see HalftoneJob
+ */
+public class HalftoneService {
+    private final ThreadPoolExecutor executor;
+    private final VariantCache cache = VariantCache.getDefault();
+    /**
+     * Creates a HalftoneService.
+     * @param threads The number of HalftoneJobs run at the same time
+     * @param queueSize The number of HalftoneJobs which may wait to be run
+     * @throws IllegalArgumentException If threads or queueSize is less than 1
+     */
+    public HalftoneService(int threads, int queueSize){
+        if(threads < 1 || queueSize < 1){
+            throw new IllegalArgumentException();
+        }
+        ThreadFactory factory = new ThreadFactory(){
+            public Thread newThread(Runnable r){
+                Thread thread = new Thread(r, "Halftone");
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, 
+                new ArrayBlockingQueue<Runnable>(queueSize), factory);
+    }
+    /**
+     * Starts calculating the lattice halftone of the image.
+     * @param image The image to be halftoned
+     * @param size Height and width of each halftone area
+     * @param listener The Listener told of the jobs progress
+     * @return The HalftoneJob calculating the halftone
+     * @throws RejectedExecutionException If too many HalftoneJobs are waiting
+     * @see PositionedImage#toLatticeHalftone(int, boolean)
+     */
+    public HalftoneJob submit(PositionedImage image, int size, HalftoneJob.Listener listener){
+        return execute(new HalftoneJob(image, size, false, listener, cache));
+    }
+    /**
+     * Starts calculating the CMYK halftone of the image.
+     * @param image The image to be halftoned
+     * @param size Height and width of each halftone area
+     * @param listener The Listener told of the jobs progress
+     * @return The HalftoneJob calculating the halftone
+     * @throws RejectedExecutionException If too many HalftoneJobs are waiting
+     * @see PositionedImage#toCMYKHalftone(int, boolean)
+     */
+    public HalftoneJob submitCMYK(PositionedImage image, int size, HalftoneJob.Listener listener){
+        return execute(new HalftoneJob(image, size, true, listener, cache));
+    }
+    /**
+     * Starts screening the image with the threshold matrix.
+     * @param image The image to be screened
+     * @param matrix The ThresholdMatrix to screen with
+     * @param listener The Listener told of the jobs progress
+     * @return The HalftoneJob calculating the screened image
+     * @throws RejectedExecutionException If too many HalftoneJobs are waiting
+     * @see PositionedImage#toScreened(ThresholdMatrix)
+     */
+    public HalftoneJob submitScreened(PositionedImage image, ThresholdMatrix matrix, 
+            HalftoneJob.Listener listener){
+        return execute(new HalftoneJob(image, matrix, listener, cache));
+    }
+    /**
+     * Starts the HalftoneJob.
+     */
+    private HalftoneJob execute(HalftoneJob job){
+        executor.execute(job.getTask());
+        return job;
+    }
+    /**
+     * Cancels all HalftoneJobs and stops this HalftoneService.
+     */
+    public void shutdown(){
+        for(Runnable task : executor.shutdownNow()){
+            ((FutureTask<?>) task).cancel(false);
+        }
+    }
+}
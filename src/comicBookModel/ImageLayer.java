@@ -24,20 +24,29 @@ import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.Rectangle;
+import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutionException;
 
 /**
  * An ImageLayer is a Layer which has an PositionedImage for it's contents. 
- * The PositionedImage can have greyscale and/or halftone effects applied.
+ * The PositionedImage can have greyscale and/or halftone effects applied, or
+ * be screened with a ThresholdMatrix. Images with halftone or screening 
+ * applied are kept in a VariantCache, so they are only calculated once 
+ * across sessions.
  * @see Layer
  * @see PositionedImage
  * @see PositionedImage#toGreyscale()
- * @see PositionedImage#toHalftone(int)
+ * @see PositionedImage#toLatticeHalftone(int, boolean)
+ * @see PositionedImage#toScreened(ThresholdMatrix)
  * 
  * @author Alastair Crowe
  */
 public class ImageLayer extends Layer {
-    /* The ImageLayer may hold up to 4 different copies of this image
+    /* The ImageLayer may hold up to 6 different copies of this image
      * internally, each with different effects applied. This is to
      * ensure the effect is only recalculated when it is changed.
      */
@@ -46,19 +55,53 @@ public class ImageLayer extends Layer {
     public static final String GREYSCALE = "Grey Scale Image";
     public static final String RGB_HALFTONE = "RGB Halftone Image";
     public static final String BW_HALFTONE = "BW Halftone Image";
+    public static final String SCREENED = "Screened Image";
+    public static final String CMYK_HALFTONE = "CMYK Halftone Image";
     
     private PositionedImage IMAGE;
     private PositionedImage GREYSCALE_IMAGE;
     private PositionedImage RGB_HALFTONE_IMAGE;
     private PositionedImage BW_HALFTONE_IMAGE;
+    private PositionedImage SCREENED_IMAGE;
+    private PositionedImage CMYK_HALFTONE_IMAGE;
+    // Halftones and screenings still being calculated, the image without 
+    // the effect is shown in their place until they finish
+    private HalftoneJob RGB_HALFTONE_JOB;
+    private HalftoneJob BW_HALFTONE_JOB;
+    private HalftoneJob CMYK_HALFTONE_JOB;
+    private HalftoneJob SCREENED_JOB;
+    // The HalftoneJob as last seen by propertiesChanged()
+    private HalftoneJob SEEN_HALFTONE_JOB;
     private int HALFTONE_SIZE = -1;
+    private ThresholdMatrix SCREEN_MATRIX = ThresholdMatrix.CLUSTERED_DOT;
     private String type;
+    // Stores the images with effects applied between sessions
+    private static final VariantCache CACHE = VariantCache.getDefault();
+    // The ImagePyramids of the images shown, shared with the snapshots
+    private final Map<PositionedImage, ImagePyramid> PYRAMIDS;
     /**
      * Creates a ImageLayer with neither greyscale or halftone effects.
      * @see Layer#Layer(int, int)
      */
     ImageLayer(int width, int height) {
         super(width, height);
+        PYRAMIDS = Collections.synchronizedMap(new WeakHashMap<PositionedImage, ImagePyramid>());
+    }
+    /**
+     * Creates a copy of the specified ImageLayer, with the image it shows 
+     * now and no effects left to apply.
+     * @see Layer#snapshot()
+     */
+    private ImageLayer(ImageLayer layer) {
+        super(layer);
+        IMAGE = layer.getImage();
+        PYRAMIDS = layer.PYRAMIDS;
+    }
+    /**
+     * @see Layer#copy()
+     */
+    protected Layer copy(){
+        return new ImageLayer(this);
     }
     /**
      * Returns this ImageLayers images effects setting as a String. Null is 
@@ -70,14 +113,24 @@ public class ImageLayer extends Layer {
     /**
      * Sets this ImageLayers images effects setting. Null indicates no effects 
      * are to be applied.
+     * @throws IllegalArgumentException If the type is a halftone and the 
+     * halftone size has not been set
+     * @see #setHalftoneSize(int)
      */
     public void setType(String type) {
+        if((type == RGB_HALFTONE || type == BW_HALFTONE || type == CMYK_HALFTONE) 
+                && this.HALFTONE_SIZE < 2){
+            throw new IllegalArgumentException();
+        }
+        if(type != this.type){
+            modified();
+        }
         this.type = type;
     }
     /**
      * Sets this ImageLayers halftone size.
      * @param size Height and width of each halftone area
-     * @see PositionedImage#toHalftone(int)
+     * @see PositionedImage#toLatticeHalftone(int, boolean)
      */
     public void setHalftoneSize(int size){
         if(size < 2){
@@ -86,6 +139,9 @@ public class ImageLayer extends Layer {
         if(size != this.HALFTONE_SIZE){
             this.RGB_HALFTONE_IMAGE = null;
             this.BW_HALFTONE_IMAGE = null;
+            this.CMYK_HALFTONE_IMAGE = null;
+            cancelHalftoneJobs();
+            modified();
         }
         this.HALFTONE_SIZE = size;
     }
@@ -95,6 +151,30 @@ public class ImageLayer extends Layer {
     public int getHalftoneSize(){
         return this.HALFTONE_SIZE;
     }
+    /**
+     * Sets the ThresholdMatrix this ImageLayers image is screened with.
+     * @see PositionedImage#toScreened(ThresholdMatrix)
+     */
+    public void setScreenMatrix(ThresholdMatrix matrix){
+        if(matrix == null){
+            throw new IllegalArgumentException();
+        }
+        if(matrix != this.SCREEN_MATRIX){
+            this.SCREENED_IMAGE = null;
+            if(this.SCREENED_JOB != null){
+                this.SCREENED_JOB.cancel(true);
+                this.SCREENED_JOB = null;
+            }
+            modified();
+        }
+        this.SCREEN_MATRIX = matrix;
+    }
+    /**
+     * @return The ThresholdMatrix this ImageLayers image is screened with
+     */
+    public ThresholdMatrix getScreenMatrix(){
+        return this.SCREEN_MATRIX;
+    }
     /**
      * @return This ImageLayers PositionedImage with any effects applied if 
      * applicable.
@@ -108,6 +188,10 @@ public class ImageLayer extends Layer {
             return getRGBHalftone();
         }else if(this.type == BW_HALFTONE){
             return getBWHalftone();
+        }else if(this.type == SCREENED){
+            return getScreened();
+        }else if(this.type == CMYK_HALFTONE){
+            return getCMYKHalftone();
         }else{
             assert false;
             return null;
@@ -128,6 +212,8 @@ public class ImageLayer extends Layer {
         if(this.IMAGE == null){
             return null;
         }else if(this.GREYSCALE_IMAGE == null){
+            // Not kept in the VariantCache, as converting is quicker than 
+            // hashing the image
             this.GREYSCALE_IMAGE = this.IMAGE.toGreyscale();
         }
         return this.GREYSCALE_IMAGE;
@@ -135,31 +221,304 @@ public class ImageLayer extends Layer {
     /**
      * @return This ImageLayers PositionedImage with the halftone effect 
      * applied. Returns Null if no image has been set
-     * @see PositionedImage#toHalftone(int)
+     * @see PositionedImage#toLatticeHalftone(int, boolean)
      */
     public PositionedImage getRGBHalftone(){
         if(this.IMAGE == null){
             return null;
-        }else if(this.RGB_HALFTONE_IMAGE == null){
-            this.RGB_HALFTONE_IMAGE = this.IMAGE.toHalftone(this.HALFTONE_SIZE);
+        }else if(this.RGB_HALFTONE_JOB != null){
+            if(!this.RGB_HALFTONE_JOB.isDone()){
+                return this.IMAGE;
+            }
+            HalftoneJob job = this.RGB_HALFTONE_JOB;
+            this.RGB_HALFTONE_JOB = null;
+            this.RGB_HALFTONE_IMAGE = getResult(job);
+            if(this.RGB_HALFTONE_IMAGE == null){
+                // The job was cancelled or failed, so remove the halftone 
+                // effect rather than calculating it here
+                if(this.type == RGB_HALFTONE){
+                    this.type = null;
+                }
+                return this.IMAGE;
+            }
+        }
+        if(this.RGB_HALFTONE_IMAGE == null){
+            String effect = HalftoneJob.getEffect(this.HALFTONE_SIZE, this.IMAGE.getType());
+            this.RGB_HALFTONE_IMAGE = getCached(this.IMAGE, effect);
+            if(this.RGB_HALFTONE_IMAGE == null){
+                this.RGB_HALFTONE_IMAGE = this.IMAGE.toLatticeHalftone(this.HALFTONE_SIZE, true);
+                putCached(this.IMAGE, effect, this.RGB_HALFTONE_IMAGE);
+            }
         }
         return this.RGB_HALFTONE_IMAGE;
     }
     public void setRGBHalftone(PositionedImage rgbHalftoneImage, int halftoneSize){
         this.setHalftoneSize(halftoneSize);    // This nulls current images if different
         this.RGB_HALFTONE_IMAGE = rgbHalftoneImage;
+        modified();
     }
     public PositionedImage getBWHalftone(){
         if(this.IMAGE == null){
             return null;
-        }else if(this.BW_HALFTONE_IMAGE == null){
-            this.BW_HALFTONE_IMAGE = this.getGreyscale().toHalftone(this.HALFTONE_SIZE);
+        }else if(this.BW_HALFTONE_JOB != null){
+            if(!this.BW_HALFTONE_JOB.isDone()){
+                return this.getGreyscale();
+            }
+            HalftoneJob job = this.BW_HALFTONE_JOB;
+            this.BW_HALFTONE_JOB = null;
+            this.BW_HALFTONE_IMAGE = getResult(job);
+            if(this.BW_HALFTONE_IMAGE == null){
+                // The job was cancelled or failed, so remove the halftone 
+                // effect rather than calculating it here
+                if(this.type == BW_HALFTONE){
+                    this.type = GREYSCALE;
+                }
+                return this.getGreyscale();
+            }
+        }
+        if(this.BW_HALFTONE_IMAGE == null){
+            PositionedImage greyscale = this.getGreyscale();
+            String effect = HalftoneJob.getEffect(this.HALFTONE_SIZE, greyscale.getType());
+            this.BW_HALFTONE_IMAGE = getCached(greyscale, effect);
+            if(this.BW_HALFTONE_IMAGE == null){
+                this.BW_HALFTONE_IMAGE = greyscale.toLatticeHalftone(this.HALFTONE_SIZE, true);
+                putCached(greyscale, effect, this.BW_HALFTONE_IMAGE);
+            }
         }
         return this.BW_HALFTONE_IMAGE;
     }
     public void setBWHalftone(PositionedImage bwHalftoneImage, int halftoneSize){
         this.setHalftoneSize(halftoneSize);    // This nulls current images if different
         this.BW_HALFTONE_IMAGE = bwHalftoneImage;
+        modified();
+    }
+    /**
+     * Sets the HalftoneJob calculating the rgb halftone of this ImageLayers
+     * PositionedImage. Until it finishes the image without halftone is shown
+     * in its place. Any previous HalftoneJob is cancelled.
+     * @throws IllegalArgumentException If the job is not a lattice halftone
+     * @see HalftoneService#submit(PositionedImage, int, HalftoneJob.Listener)
+     */
+    public void setRGBHalftone(HalftoneJob job){
+        if(job.isCMYK() || job.getMatrix() != null){
+            throw new IllegalArgumentException();
+        }
+        this.setHalftoneSize(job.getSize());    // This nulls current images if different
+        cancelHalftoneJobs();
+        this.RGB_HALFTONE_IMAGE = null;
+        this.RGB_HALFTONE_JOB = job;
+        modified();
+    }
+    /**
+     * Sets the HalftoneJob calculating the black and white halftone of this
+     * ImageLayers PositionedImage. Until it finishes the greyscale image is 
+     * shown in its place. Any previous HalftoneJob is cancelled.
+     * @throws IllegalArgumentException If the job is not a lattice halftone
+     * @see HalftoneService#submit(PositionedImage, int, HalftoneJob.Listener)
+     */
+    public void setBWHalftone(HalftoneJob job){
+        if(job.isCMYK() || job.getMatrix() != null){
+            throw new IllegalArgumentException();
+        }
+        this.setHalftoneSize(job.getSize());    // This nulls current images if different
+        cancelHalftoneJobs();
+        this.BW_HALFTONE_IMAGE = null;
+        this.BW_HALFTONE_JOB = job;
+        modified();
+    }
+    /**
+     * Sets the HalftoneJob calculating the CMYK halftone of this ImageLayers
+     * PositionedImage. Until it finishes the image without halftone is shown
+     * in its place. Any previous HalftoneJob is cancelled.
+     * @throws IllegalArgumentException If the job is not a CMYK halftone
+     * @see HalftoneService#submitCMYK(PositionedImage, int, HalftoneJob.Listener)
+     */
+    public void setCMYKHalftone(HalftoneJob job){
+        if(!job.isCMYK()){
+            throw new IllegalArgumentException();
+        }
+        this.setHalftoneSize(job.getSize());    // This nulls current images if different
+        cancelHalftoneJobs();
+        this.CMYK_HALFTONE_IMAGE = null;
+        this.CMYK_HALFTONE_JOB = job;
+        modified();
+    }
+    /**
+     * Sets the HalftoneJob screening this ImageLayers PositionedImage, and 
+     * its ThresholdMatrix as the one screened with. Until it finishes the 
+     * image without screening is shown in its place. Any previous 
+     * HalftoneJob is cancelled.
+     * @throws IllegalArgumentException If the job is not a screening
+     * @see HalftoneService#submitScreened(PositionedImage, ThresholdMatrix, HalftoneJob.Listener)
+     */
+    public void setScreened(HalftoneJob job){
+        if(job.getMatrix() == null){
+            throw new IllegalArgumentException();
+        }
+        this.setScreenMatrix(job.getMatrix());    // This nulls the current image if different
+        cancelHalftoneJobs();
+        this.SCREENED_IMAGE = null;
+        this.SCREENED_JOB = job;
+        modified();
+    }
+    /**
+     * Returns the HalftoneJob still calculating the halftone currently 
+     * shown, or null if there is none.
+     */
+    public HalftoneJob getHalftoneJob(){
+        HalftoneJob job = null;
+        if(this.type == RGB_HALFTONE){
+            job = this.RGB_HALFTONE_JOB;
+        }else if(this.type == BW_HALFTONE){
+            job = this.BW_HALFTONE_JOB;
+        }else if(this.type == CMYK_HALFTONE){
+            job = this.CMYK_HALFTONE_JOB;
+        }else if(this.type == SCREENED){
+            job = this.SCREENED_JOB;
+        }
+        return job == null || job.isDone() ? null : job;
+    }
+    /**
+     * Cancels the HalftoneJob calculating the halftone currently shown, and
+     * removes the halftone effect.
+     */
+    public void cancelHalftone(){
+        if(this.type == RGB_HALFTONE && this.RGB_HALFTONE_JOB != null){
+            this.type = null;
+        }else if(this.type == BW_HALFTONE && this.BW_HALFTONE_JOB != null){
+            this.type = GREYSCALE;
+        }else if(this.type == CMYK_HALFTONE && this.CMYK_HALFTONE_JOB != null){
+            this.type = null;
+        }else if(this.type == SCREENED && this.SCREENED_JOB != null){
+            this.type = null;
+        }
+        cancelHalftoneJobs();
+        modified();
+    }
+    /**
+     * Cancels any HalftoneJobs which have not finished.
+     */
+    private void cancelHalftoneJobs(){
+        if(this.RGB_HALFTONE_JOB != null){
+            this.RGB_HALFTONE_JOB.cancel(true);
+            this.RGB_HALFTONE_JOB = null;
+        }
+        if(this.BW_HALFTONE_JOB != null){
+            this.BW_HALFTONE_JOB.cancel(true);
+            this.BW_HALFTONE_JOB = null;
+        }
+        if(this.CMYK_HALFTONE_JOB != null){
+            this.CMYK_HALFTONE_JOB.cancel(true);
+            this.CMYK_HALFTONE_JOB = null;
+        }
+        if(this.SCREENED_JOB != null){
+            this.SCREENED_JOB.cancel(true);
+            this.SCREENED_JOB = null;
+        }
+    }
+    /**
+     * Returns the source image with the effect from the VariantCache, or 
+     * null if it is not cached. The source is never hashed here, it is only
+     * looked up once it has been hashed in the background.
+     * @see VariantCache#prepare(PositionedImage)
+     */
+    private static PositionedImage getCached(PositionedImage source, String effect){
+        String hash = VariantCache.getHash(source);
+        return hash == null ? null : CACHE.get(hash, effect);
+    }
+    /**
+     * Stores the source image with the effect in the VariantCache, hashing
+     * it in the background.
+     */
+    private static void putCached(PositionedImage source, String effect, PositionedImage image){
+        CACHE.put(source, effect, image);
+    }
+    /**
+     * Returns the result of a finished HalftoneJob, or null if it was 
+     * cancelled or failed. The cause of a failure is reported to the jobs
+     * Listener.
+     * @see HalftoneJob.Listener
+     */
+    private static PositionedImage getResult(HalftoneJob job){
+        if(job.isCancelled()){
+            return null;
+        }
+        try {
+            return job.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+    /**
+     * @return This ImageLayers PositionedImage with the CMYK halftone effect
+     * applied. Returns Null if no image has been set.
+     * @see PositionedImage#toCMYKHalftone(int, boolean)
+     */
+    public PositionedImage getCMYKHalftone(){
+        if(this.IMAGE == null){
+            return null;
+        }else if(this.CMYK_HALFTONE_JOB != null){
+            if(!this.CMYK_HALFTONE_JOB.isDone()){
+                return this.IMAGE;
+            }
+            HalftoneJob job = this.CMYK_HALFTONE_JOB;
+            this.CMYK_HALFTONE_JOB = null;
+            this.CMYK_HALFTONE_IMAGE = getResult(job);
+            if(this.CMYK_HALFTONE_IMAGE == null){
+                // The job was cancelled or failed, so remove the halftone 
+                // effect rather than calculating it here
+                if(this.type == CMYK_HALFTONE){
+                    this.type = null;
+                }
+                return this.IMAGE;
+            }
+        }
+        if(this.CMYK_HALFTONE_IMAGE == null){
+            String effect = HalftoneJob.getCMYKEffect(this.HALFTONE_SIZE);
+            this.CMYK_HALFTONE_IMAGE = getCached(this.IMAGE, effect);
+            if(this.CMYK_HALFTONE_IMAGE == null){
+                this.CMYK_HALFTONE_IMAGE = this.IMAGE.toCMYKHalftone(this.HALFTONE_SIZE, true);
+                putCached(this.IMAGE, effect, this.CMYK_HALFTONE_IMAGE);
+            }
+        }
+        return this.CMYK_HALFTONE_IMAGE;
+    }
+    /**
+     * @return This ImageLayers PositionedImage screened with its 
+     * ThresholdMatrix. Returns Null if no image has been set.
+     * @see PositionedImage#toScreened(ThresholdMatrix)
+     */
+    public PositionedImage getScreened(){
+        if(this.IMAGE == null){
+            return null;
+        }else if(this.SCREENED_JOB != null){
+            if(!this.SCREENED_JOB.isDone()){
+                return this.IMAGE;
+            }
+            HalftoneJob job = this.SCREENED_JOB;
+            this.SCREENED_JOB = null;
+            this.SCREENED_IMAGE = getResult(job);
+            if(this.SCREENED_IMAGE == null){
+                // The job was cancelled or failed, so remove the screening 
+                // effect rather than calculating it here
+                if(this.type == SCREENED){
+                    this.type = null;
+                }
+                return this.IMAGE;
+            }
+        }
+        if(this.SCREENED_IMAGE == null){
+            String effect = HalftoneJob.getScreenedEffect(this.SCREEN_MATRIX);
+            this.SCREENED_IMAGE = getCached(this.IMAGE, effect);
+            if(this.SCREENED_IMAGE == null){
+                this.SCREENED_IMAGE = this.IMAGE.toScreened(this.SCREEN_MATRIX);
+                putCached(this.IMAGE, effect, this.SCREENED_IMAGE);
+            }
+        }
+        return this.SCREENED_IMAGE;
     }
     /**
      * Returns true if this ImageLayers PositionedImage has already been set. 
@@ -188,15 +547,28 @@ public class ImageLayer extends Layer {
     public boolean bwHalftoneSet(){
         return this.BW_HALFTONE_IMAGE == null;
     }
+    /**
+     * Returns true if the CMYK halftone copy of this ImageLayers
+     * PositionedImage has already been calculated. 
+     */
+    public boolean cmykHalftoneSet(){
+        return this.CMYK_HALFTONE_IMAGE == null;
+    }
     /**
      * Sets the PositionedImage for this ImageLayers contents.
      */
     public void setImage(PositionedImage image){
         // Set the image
         IMAGE = image;
+        // Hash the image in the background, so its effects can be found in
+        // the VariantCache
+        CACHE.prepare(image);
+        cancelHalftoneJobs();
         GREYSCALE_IMAGE = null;
         RGB_HALFTONE_IMAGE = null;
         BW_HALFTONE_IMAGE = null;
+        SCREENED_IMAGE = null;
+        CMYK_HALFTONE_IMAGE = null;
         // Set the type as default
         this.type = null;
         // Scale the image to fit inside the border without stretching
@@ -210,14 +582,38 @@ public class ImageLayer extends Layer {
         int x = (int) (rect.getLocation().x + (rect.width - CONTENTS_WIDTH)/2d);
         int y = (int) (rect.getLocation().y + (rect.height - CONTENTS_HEIGHT)/2d);
         CONTENTS_POSITION = new Point(x, y);
+        modified();
+    }
+    /**
+     * Also checks whether the HalftoneJob shown has finished, as its 
+     * halftone then replaces the image shown in its place.
+     * @see Layer#propertiesChanged()
+     */
+    protected boolean propertiesChanged(){
+        HalftoneJob job = getHalftoneJob();
+        boolean changed = super.propertiesChanged() || job != SEEN_HALFTONE_JOB;
+        SEEN_HALFTONE_JOB = job;
+        return changed;
+    }
+    /**
+     * Returns the ImagePyramid of the image, making it if the image has not
+     * been shown before.
+     */
+    private ImagePyramid getPyramid(PositionedImage image){
+        synchronized(PYRAMIDS){
+            ImagePyramid pyramid = PYRAMIDS.get(image);
+            if(pyramid == null){
+                pyramid = new ImagePyramid();
+                PYRAMIDS.put(image, pyramid);
+            }
+            return pyramid;
+        }
     }
     /**
-     * Returns a BufferedImage of this ImageLayer.
+     * Draws this ImageLayer onto the Graphics2D.
+     * @see Layer#draw(Graphics2D)
      */
-    public BufferedImage toImage(){
-        // Create the image to return as an alpha mask
-        BufferedImage newImage = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_ARGB);
-        Graphics2D g = newImage.createGraphics();
+    protected void draw(Graphics2D g){
         // Clip to the border
         g.setClip(BORDER);
         // Fill the background
@@ -225,13 +621,18 @@ public class ImageLayer extends Layer {
         g.fill(BORDER);
         // Draw the requested image inside the border
         if(IMAGE != null){
-            g.drawImage(getImage(), CONTENTS_POSITION.x, CONTENTS_POSITION.y, CONTENTS_WIDTH, CONTENTS_HEIGHT, null);
+            // Draw from the level of the image nearest the size drawn, drafts
+            // are scaled the quickest way
+            PositionedImage image = getImage();
+            BufferedImage level = getPyramid(image).getLevel(image, CONTENTS_WIDTH, CONTENTS_HEIGHT);
+            Object interpolation = isDraft() ? RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR 
+                    : RenderingHints.VALUE_INTERPOLATION_BILINEAR;
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+            g.drawImage(level, CONTENTS_POSITION.x, CONTENTS_POSITION.y, CONTENTS_WIDTH, CONTENTS_HEIGHT, null);
         }
         // Reset the clipping region
         g.setClip(0, 0, getWidth(), getHeight());
         // Draw the border
-        drawBorderGrid(g);
-        g.dispose();
-        return newImage;
+        drawBorder(g);
     }
 }
@@ -0,0 +1,105 @@
+ /*
+  * Comic Book Creator - A program for creating a comic book photo album.
+  * Copyright (C) 2013  Alastair Crowe
+  *
+  * This code is free software; you can redistribute it and/or modify it
+  * under the terms of the GNU General Public License version 2 only, as
+  * published by the Free Software Foundation.
+  *
+  * This code is distributed in the hope that it will be useful, but WITHOUT
+  * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+  * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+  * version 2 for more details.
+  
+  * You should have received a copy of the GNU General Public License version
+  * 2 along with this work; if not, write to the Free Software Foundation,
+  * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+  *
+  * Please contact comicbookhelp@gmail.com if you need additional information
+  * or have any questions.
+  */
+package comicBookModel;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+
+/**
+ * An ImagePyramid holds copies of an image halved in size again and again, 
+ * down to a single pixel. Each level is averaged from the level above, so
+ * drawing the image smaller than it is from the nearest level at or above
+ * that size is both quicker and smoother than drawing it from the whole 
+ * image. Levels are only made when first needed. The image itself is not 
+ * held, so an ImagePyramid can be kept against its image in a WeakHashMap.
+ */
+class ImagePyramid {
+    // The levels made so far, starting with the image halved once
+    private final ArrayList<BufferedImage> levels = new ArrayList<BufferedImage>();
+    /**
+     * Returns the smallest level of the image which is at least the 
+     * specified width and height, or the image itself if it is smaller. The
+     * image must be the same every time it is passed.
+     * @throws IllegalArgumentException If the image is not of type 
+     * TYPE_INT_RGB or TYPE_BYTE_GRAY.
+     */
+    synchronized BufferedImage getLevel(BufferedImage image, int width, int height){
+        if(image.getType() != BufferedImage.TYPE_INT_RGB && image.getType() != BufferedImage.TYPE_BYTE_GRAY){
+            throw new IllegalArgumentException();
+        }
+        BufferedImage level = image;
+        for(int i = 0; ; i++){
+            int w = level.getWidth(), h = level.getHeight();
+            if((w + 1) / 2 < width || (h + 1) / 2 < height || (w == 1 && h == 1)){
+                return level;
+            }
+            if(i == levels.size()){
+                levels.add(halve(level));
+            }
+            level = levels.get(i);
+        }
+    }
+    /**
+     * Returns a copy of the image half its width and height, rounded up. 
+     * Each pixel is the mean of the 2 by 2 pixels it covers, or fewer on the
+     * last row and column of odd sizes.
+     */
+    private static BufferedImage halve(BufferedImage image){
+        int width = image.getWidth(), height = image.getHeight();
+        int newWidth = (width + 1) / 2, newHeight = (height + 1) / 2;
+        BufferedImage newImage = new BufferedImage(newWidth, newHeight, image.getType());
+        boolean rgb = image.getType() == BufferedImage.TYPE_INT_RGB;
+        int[] rgbData = null, newRGBData = null;
+        byte[] greyData = null, newGreyData = null;
+        if(rgb){
+            rgbData = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            newRGBData = ((DataBufferInt) newImage.getRaster().getDataBuffer()).getData();
+        }else{
+            greyData = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+            newGreyData = ((DataBufferByte) newImage.getRaster().getDataBuffer()).getData();
+        }
+        for(int y = 0; y < newHeight; y++){
+            // Rows and columns past the edge repeat the last one
+            int row0 = 2 * y * width;
+            int row1 = Math.min(2 * y + 1, height - 1) * width;
+            for(int x = 0; x < newWidth; x++){
+                int x0 = 2 * x;
+                int x1 = Math.min(2 * x + 1, width - 1);
+                int index = y * newWidth + x;
+                if(rgb){
+                    int a = rgbData[row0 + x0], b = rgbData[row0 + x1];
+                    int c = rgbData[row1 + x0], d = rgbData[row1 + x1];
+                    int red = ((a >> 16 & 0xFF) + (b >> 16 & 0xFF) + (c >> 16 & 0xFF) + (d >> 16 & 0xFF) + 2) >> 2;
+                    int green = ((a >> 8 & 0xFF) + (b >> 8 & 0xFF) + (c >> 8 & 0xFF) + (d >> 8 & 0xFF) + 2) >> 2;
+                    int blue = ((a & 0xFF) + (b & 0xFF) + (c & 0xFF) + (d & 0xFF) + 2) >> 2;
+                    newRGBData[index] = red << 16 | green << 8 | blue;
+                }else{
+                    int sum = (greyData[row0 + x0] & 0xFF) + (greyData[row0 + x1] & 0xFF)
+                            + (greyData[row1 + x0] & 0xFF) + (greyData[row1 + x1] & 0xFF);
+                    newGreyData[index] = (byte) ((sum + 2) >> 2);
+                }
+            }
+        }
+        return newImage;
+    }
+}
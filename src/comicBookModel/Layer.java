@@ -25,7 +25,9 @@ import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.Rectangle;
+import java.awt.Shape;
 import java.awt.image.BufferedImage;
+import java.util.Arrays;
 
 /**
  * A Layer has a final width and height upon construction. A Layer contains
@@ -41,10 +43,33 @@ public abstract class Layer {
     protected BasicStroke BORDER_STROKE = new BasicStroke(5f, BasicStroke.CAP_ROUND,
             BasicStroke.JOIN_MITER);
     public Color BORDER_COLOR = Color.BLACK;
+    // The border is drawn dashed while the Layer is being edited
+    private static final float[] HIGHLIGHT_DASH = {10f};
+    private boolean HIGHLIGHTED = false;
+    // A draft is drawn quickly at a lower quality, while the Layer is dragged
+    private boolean DRAFT = false;
+    // The stroked outline of the border, kept until the border or stroke 
+    // change
+    private Shape STROKED_BORDER;
+    private int STROKED_MOD_COUNT = -1;
+    private BasicStroke STROKED_STROKE;
+    // The border drawn on its own, shared with the snapshots
+    private final BorderImage BORDER_IMAGE;
     // Contents Properties
     protected Point CONTENTS_POSITION;
     protected int CONTENTS_WIDTH;
     protected int CONTENTS_HEIGHT;
+    // Render cache, the image from toImage() is reused until VERSION changes
+    private int VERSION = 0;
+    private BufferedImage CACHED_IMAGE;
+    private Rectangle CACHED_BOUNDS;
+    private int CACHED_VERSION = -1;
+    // The public and Border properties as last seen by getVersion()
+    private Color SEEN_BORDER_COLOR = BORDER_COLOR;
+    private int SEEN_BORDER_MOD_COUNT = -1;
+    // The last copy returned by snapshot(), and the version it was copied at
+    private Layer SNAPSHOT;
+    private int SNAPSHOT_VERSION;
     /**
      * Creates a Layer with the specified width and height. The border and
      * contents are an empty rectangle, half the height and width of the layer,
@@ -63,6 +88,27 @@ public abstract class Layer {
         int[] ypoints = {contentsY, contentsY, contentsY + CONTENTS_HEIGHT, contentsY + CONTENTS_HEIGHT};
         int npoints = 4;
         BORDER = new Border(xpoints, ypoints, npoints, width, height);
+        BORDER_IMAGE = new BorderImage();
+    }
+    /**
+     * Creates a copy of the specified Layer, for snapshot(). The copy shares
+     * the drawn border, and starts with the stroked border if it is current.
+     */
+    protected Layer(Layer layer){
+        WIDTH = layer.WIDTH;
+        HEIGHT = layer.HEIGHT;
+        BORDER = new Border(layer.BORDER);
+        BORDER_STROKE = layer.BORDER_STROKE;
+        BORDER_COLOR = layer.BORDER_COLOR;
+        BORDER_IMAGE = layer.BORDER_IMAGE;
+        if(layer.STROKED_MOD_COUNT == layer.BORDER.getModCount() && layer.STROKED_STROKE == BORDER_STROKE){
+            STROKED_BORDER = layer.STROKED_BORDER;
+            STROKED_MOD_COUNT = BORDER.getModCount();
+            STROKED_STROKE = BORDER_STROKE;
+        }
+        CONTENTS_POSITION = new Point(layer.CONTENTS_POSITION);
+        CONTENTS_WIDTH = layer.CONTENTS_WIDTH;
+        CONTENTS_HEIGHT = layer.CONTENTS_HEIGHT;
     }
     /**
      * Returns the width of this Layer.
@@ -104,8 +150,61 @@ public abstract class Layer {
      * Sets the stroke of the border.
      */
     public void setStroke(BasicStroke stroke){
+        if(!stroke.equals(BORDER_STROKE)){
+            modified();
+        }
         BORDER_STROKE = stroke;
     }
+    /**
+     * Sets whether the border is drawn dashed, to show this Layer is being 
+     * edited.
+     */
+    void setHighlighted(boolean highlighted){
+        if(highlighted != HIGHLIGHTED){
+            modified();
+        }
+        HIGHLIGHTED = highlighted;
+    }
+    /**
+     * Sets whether this Layer is drawn as a draft, quickly at a lower 
+     * quality, while it is being dragged.
+     */
+    void setDraft(boolean draft){
+        if(draft != DRAFT){
+            modified();
+        }
+        DRAFT = draft;
+    }
+    /**
+     * Returns true if this Layer is drawn as a draft.
+     * @see #setDraft(boolean)
+     */
+    protected boolean isDraft(){
+        return DRAFT;
+    }
+    /**
+     * Returns the area of the page this Layer draws in, the bounds of its 
+     * stroked border.
+     */
+    public Rectangle getBounds(){
+        Rectangle page = new Rectangle(0, 0, WIDTH, HEIGHT);
+        return getStrokedBounds().intersection(page);
+    }
+    /**
+     * Returns the bounds of the stroked border, allowing for rounding to 
+     * pixels.
+     */
+    private Rectangle getStrokedBounds(){
+        if(STROKED_BORDER == null || STROKED_MOD_COUNT != BORDER.getModCount() 
+                || STROKED_STROKE != BORDER_STROKE){
+            STROKED_BORDER = BORDER_STROKE.createStrokedShape(BORDER);
+            STROKED_MOD_COUNT = BORDER.getModCount();
+            STROKED_STROKE = BORDER_STROKE;
+        }
+        Rectangle rect = STROKED_BORDER.getBounds();
+        rect.grow(1, 1);
+        return rect;
+    }
     /**
      * Translates the border and contents by the specified amounts.
      */
@@ -121,7 +220,8 @@ public abstract class Layer {
         scaleContents(factor);
     }
     /**
-     * Translates the border by the specified amounts.
+     * Translates the border by the specified amounts. The Border counts its
+     * own changes, so this and scaleBorder do not call modified().
      */
     public void translateBorder(int x, int y){
         BORDER.translate(x, y);
@@ -138,6 +238,7 @@ public abstract class Layer {
     public void translateContents(int x, int y){
         CONTENTS_POSITION.x += x;
         CONTENTS_POSITION.y += y;
+        modified();
     }
     /**
      * Scales the contents by the specified factor.
@@ -153,54 +254,215 @@ public abstract class Layer {
         // And Scale
         CONTENTS_WIDTH = (int) Math.round(CONTENTS_WIDTH * factor);
         CONTENTS_HEIGHT = (int) Math.round(CONTENTS_HEIGHT * factor);
+        modified();
     }
     /**
-     * Returns a BufferedImage of this Layer.
-     */
-    abstract BufferedImage toImage();
-    /**
-     * Draws this layers border onto the given Graphic2D. If the borders grid
-     * is active, the grid is drawn too.
-     */
-    protected void drawBorderGrid(Graphics2D g){
-        // This function draws the border/grid in layering levels of 
-        // transparency from the centre to the edge, when the centre is 100%
-        // opaque. This creates smooth edges of the border/grid stroke. 
-        int steps = (int) Math.ceil(BORDER_STROKE.getLineWidth() * 2);
-        // New Color properties
-        int alphaStep = BORDER_COLOR.getAlpha() / steps;
-        int red = BORDER_COLOR.getRed();
-        int green = BORDER_COLOR.getGreen();
-        int blue = BORDER_COLOR.getBlue();
-        // New Stroke Properties
-        int cap = BORDER_STROKE.getEndCap();
-        int join = BORDER_STROKE.getLineJoin();
-        float miterlimit = BORDER_STROKE.getMiterLimit();
-        float[] dash = BORDER_STROKE.getDashArray();
-        float dash_phase = BORDER_STROKE.getDashPhase();
-        // Go through the levels
-        for(int s = 0; s < steps; s++){
-            int alpha = (s + 1) * alphaStep;
-            Color color = new Color(red, green, blue, alpha);
-            float width = BORDER_STROKE.getLineWidth() - (0.5f * s);
-            BasicStroke stroke = new BasicStroke(width, cap, join, miterlimit, dash, dash_phase);
-            // Draw the stroke
-            g.setStroke(stroke);
-            g.setPaint(color);
+     * Marks this Layer as modified, so its image is redrawn when next needed.
+     * Subclasses must call this whenever anything drawn by toImage() 
+     * changes.
+     */
+    protected void modified(){
+        VERSION++;
+    }
+    /**
+     * Returns true if a property drawn by toImage(), which can be changed 
+     * without calling modified(), has changed since this was last called.
+     */
+    protected boolean propertiesChanged(){
+        boolean changed = BORDER_COLOR != SEEN_BORDER_COLOR 
+                || BORDER.getModCount() != SEEN_BORDER_MOD_COUNT;
+        SEEN_BORDER_COLOR = BORDER_COLOR;
+        SEEN_BORDER_MOD_COUNT = BORDER.getModCount();
+        return changed;
+    }
+    /**
+     * Returns the modification version of this Layer. The version changes 
+     * whenever the image of this Layer does.
+     */
+    public int getVersion(){
+        if(propertiesChanged()){
+            modified();
+        }
+        return VERSION;
+    }
+    /**
+     * Returns a copy of this Layer which does not change when this Layer 
+     * does, so it can be drawn on another thread. The same copy is returned
+     * until this Layer is modified.
+     */
+    Layer snapshot(){
+        int version = getVersion();
+        if(SNAPSHOT == null || SNAPSHOT_VERSION != version){
+            SNAPSHOT = copy();
+            SNAPSHOT_VERSION = version;
+        }
+        return SNAPSHOT;
+    }
+    /**
+     * Returns a copy of this Layer, which draws the same as it does now.
+     */
+    protected abstract Layer copy();
+    /**
+     * Returns a BufferedImage of this Layer, which is only redrawn if this
+     * Layer has been modified since it was last returned. The image must not
+     * be changed by the caller.
+     * @see #toImage()
+     */
+    BufferedImage toCachedImage(){
+        int version = getVersion();
+        if(CACHED_IMAGE == null || CACHED_VERSION != version){
+            CACHED_BOUNDS = getBounds();
+            CACHED_IMAGE = toImage(CACHED_BOUNDS);
+            CACHED_VERSION = version;
+        }
+        return CACHED_IMAGE;
+    }
+    /**
+     * Returns true if toCachedImage() would return the image it last drew,
+     * without drawing it again.
+     */
+    boolean isCached(){
+        return CACHED_IMAGE != null && CACHED_VERSION == getVersion();
+    }
+    /**
+     * Draws the image of this Layer from toCachedImage() onto the 
+     * Graphics2D, in its place on the page.
+     */
+    void drawCachedImage(Graphics2D g){
+        BufferedImage image = toCachedImage();
+        g.drawImage(image, CACHED_BOUNDS.x, CACHED_BOUNDS.y, null);
+    }
+    /**
+     * Returns a BufferedImage of this Layer, only as large as the area it 
+     * draws in. The top left of the image is at the top left of getBounds()
+     * on the page.
+     * @see #getBounds()
+     */
+    BufferedImage toImage(){
+        return toImage(getBounds());
+    }
+    /**
+     * Returns a BufferedImage of the area of this Layer within bounds.
+     */
+    private BufferedImage toImage(Rectangle bounds){
+        // Create the image to return as an alpha mask
+        int width = Math.max(1, bounds.width);
+        int height = Math.max(1, bounds.height);
+        BufferedImage newImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = newImage.createGraphics();
+        g.translate(-bounds.x, -bounds.y);
+        draw(g);
+        g.dispose();
+        return newImage;
+    }
+    /**
+     * Draws this Layer onto the Graphics2D, in page coordinates. Nothing may
+     * be drawn outside getBounds().
+     */
+    protected abstract void draw(Graphics2D g);
+    /**
+     * Draws this layers border onto the given Graphic2D. The grid is not 
+     * drawn, it is only shown by the editor.
+     */
+    protected void drawBorder(Graphics2D g){
+        if(DRAFT){
+            // A single stroke, without smooth edges
+            g.setStroke(getBorderStroke());
+            g.setPaint(BORDER_COLOR);
             g.draw(BORDER);
+            return;
+        }
+        // The border is drawn from an image of it on its own, so it is only 
+        // drawn again when it has changed
+        BORDER_IMAGE.draw(g, this, getBorderStroke());
+    }
+    /**
+     * Returns the stroke of the border as drawn, dashed if this Layer is 
+     * highlighted.
+     */
+    private BasicStroke getBorderStroke(){
+        if(HIGHLIGHTED){
+            return new BasicStroke(BORDER_STROKE.getLineWidth(), BORDER_STROKE.getEndCap(), 
+                    BORDER_STROKE.getLineJoin(), BORDER_STROKE.getMiterLimit(), HIGHLIGHT_DASH, 0f);
+        }
+        return BORDER_STROKE;
+    }
+    /**
+     * A BorderImage is the border of a Layer drawn on its own, kept until its
+     * shape, stroke or colour change. Translating the border only moves the 
+     * image. It is shared by a Layer and its snapshots, which may be drawn on
+     * other threads.
+     */
+    private static class BorderImage {
+        private BufferedImage image;
+        private BasicStroke stroke;
+        private Color color;
+        // The border points relative to the first point, and the offset of 
+        // the image from the first point
+        private int[] xpoints, ypoints;
+        private Point offset;
+        /**
+         * Draws the border of the Layer with the stroke, first drawing it 
+         * into the image unless it is already there.
+         */
+        synchronized void draw(Graphics2D g, Layer layer, BasicStroke borderStroke){
+            Border border = layer.BORDER;
+            Color borderColor = layer.BORDER_COLOR;
+            // The points relative to the first point
+            int n = border.npoints;
+            int[] xpoints = new int[n];
+            int[] ypoints = new int[n];
+            for(int i = 0; i < n; i++){
+                xpoints[i] = border.xpoints[i] - border.xpoints[0];
+                ypoints[i] = border.ypoints[i] - border.ypoints[0];
+            }
+            if(image == null || !borderStroke.equals(stroke) || !borderColor.equals(color)
+                    || !Arrays.equals(xpoints, this.xpoints) || !Arrays.equals(ypoints, this.ypoints)){
+                Rectangle bounds = layer.getStrokedBounds();
+                image = new BufferedImage(bounds.width, bounds.height, BufferedImage.TYPE_INT_ARGB);
+                stroke = borderStroke;
+                color = borderColor;
+                this.xpoints = xpoints;
+                this.ypoints = ypoints;
+                offset = new Point(bounds.x - border.xpoints[0], bounds.y - border.ypoints[0]);
+                drawFeathered(image.createGraphics(), border, bounds, borderStroke, borderColor);
+            }
+            g.drawImage(image, border.xpoints[0] + offset.x, border.ypoints[0] + offset.y, null);
         }
-        // Draw the grid if required
-        if(BORDER.gridActive()){
-            Color tBlack = new Color(0, 0, 0, 128);
-            int grid = BORDER.getGrid();
-            for(int i = grid/2; i < getWidth(); i += grid){
-                for(int j = grid/2; j < getHeight(); j += grid){
-                    g.setColor(tBlack);
-                    g.fillOval(i-1, j-1, 3, 3);
-                    g.setColor(Color.BLACK);
-                    g.fillOval(i, j, 1, 1);
-                }
+        /**
+         * Draws the border with smooth edges onto the Graphics2D of an image
+         * covering the bounds, then disposes of it.
+         */
+        private static void drawFeathered(Graphics2D g, Border border, Rectangle bounds, 
+                BasicStroke borderStroke, Color borderColor){
+            g.translate(-bounds.x, -bounds.y);
+            // The border is drawn in layering levels of transparency from the 
+            // centre to the edge, when the centre is 100% opaque. This creates 
+            // smooth edges of the border stroke. 
+            int steps = (int) Math.ceil(borderStroke.getLineWidth() * 2);
+            // New Color properties
+            int alphaStep = borderColor.getAlpha() / steps;
+            int red = borderColor.getRed();
+            int green = borderColor.getGreen();
+            int blue = borderColor.getBlue();
+            // New Stroke Properties
+            int cap = borderStroke.getEndCap();
+            int join = borderStroke.getLineJoin();
+            float miterlimit = borderStroke.getMiterLimit();
+            float[] dash = borderStroke.getDashArray();
+            float dash_phase = borderStroke.getDashPhase();
+            // Go through the levels
+            for(int s = 0; s < steps; s++){
+                int alpha = (s + 1) * alphaStep;
+                Color color = new Color(red, green, blue, alpha);
+                float width = borderStroke.getLineWidth() - (0.5f * s);
+                BasicStroke stroke = new BasicStroke(width, cap, join, miterlimit, dash, dash_phase);
+                // Draw the stroke
+                g.setStroke(stroke);
+                g.setPaint(color);
+                g.draw(border);
             }
+            g.dispose();
         }
     }
 }
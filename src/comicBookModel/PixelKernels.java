@@ -0,0 +1,110 @@
+ /*
+  * Comic Book Creator - A program for creating a comic book photo album.
+  * Copyright (C) 2013  Alastair Crowe
+  *
+  * This code is free software; you can redistribute it and/or modify it
+  * under the terms of the GNU General Public License version 2 only, as
+  * published by the Free Software Foundation.
+  *
+  * This code is distributed in the hope that it will be useful, but WITHOUT
+  * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+  * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+  * version 2 for more details.
+  
+  * You should have received a copy of the GNU General Public License version
+  * 2 along with this work; if not, write to the Free Software Foundation,
+  * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+  *
+  * Please contact comicbookhelp@gmail.com if you need additional information
+  * or have any questions.
+  */
+package comicBookModel;
+
+/**
+ * PixelKernels are the inner loops which work on runs of packed 0xRRGGBB 
+ * pixels. There is a scalar implementation, and one using the incubating
+ * Vector API (jdk.incubator.vector) which is used when that module is 
+ * present. The implementation is chosen with the system property 
+ * comicBook.kernels, "vector" (the default) or "scalar", or with select so
+ * the two can be compared.
+ * @see PositionedImage
+ */
+abstract class PixelKernels {
+    static final String SCALAR = "scalar";
+    static final String VECTOR = "vector";
+    private static volatile PixelKernels current = forName(System.getProperty("comicBook.kernels", VECTOR));
+    /**
+     * Returns the PixelKernels currently in use.
+     */
+    static PixelKernels get(){
+        return current;
+    }
+    /**
+     * Selects the PixelKernels to use, falling back to scalar if the vector
+     * kernels are not available.
+     * @param name PixelKernels.VECTOR or PixelKernels.SCALAR
+     * @return The name of the PixelKernels now in use
+     */
+    static String select(String name){
+        current = forName(name);
+        return current.getName();
+    }
+    /**
+     * Returns the named PixelKernels, or the scalar PixelKernels if the 
+     * vector kernels are requested but not available.
+     */
+    private static PixelKernels forName(String name){
+        if(VECTOR.equals(name)){
+            try {
+                // Only loaded by name, so this class does not need the module
+                return (PixelKernels) Class.forName("comicBookModel.VectorKernels").getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException e) {
+            } catch (LinkageError e) {}
+        }
+        return new ScalarKernels();
+    }
+    /**
+     * Returns PixelKernels.VECTOR or PixelKernels.SCALAR.
+     */
+    abstract String getName();
+    /**
+     * Adds the red, green and blue channels of length packed pixels of src
+     * onto dst, each channel is capped at 255.
+     */
+    abstract void addSaturated(int[] dst, int dstIndex, int[] src, int srcIndex, int length);
+    /**
+     * Copies length packed pixels of src into dst.
+     */
+    abstract void copy(int[] src, int srcIndex, int[] dst, int dstIndex, int length);
+    /**
+     * The scalar PixelKernels, which add each pixel with its channels packed
+     * in an int.
+     */
+    static class ScalarKernels extends PixelKernels {
+        String getName(){
+            return SCALAR;
+        }
+        void addSaturated(int[] dst, int dstIndex, int[] src, int srcIndex, int length){
+            for(int i = 0; i < length; i++){
+                dst[dstIndex + i] = addSaturated(dst[dstIndex + i], src[srcIndex + i]);
+            }
+        }
+        void copy(int[] src, int srcIndex, int[] dst, int dstIndex, int length){
+            System.arraycopy(src, srcIndex, dst, dstIndex, length);
+        }
+    }
+    /**
+     * Adds the red, green and blue channels of two packed 0xRRGGBB values, 
+     * each channel is capped at 255.
+     */
+    static int addSaturated(int rgb1, int rgb2){
+        /* Each channel is added as a byte of the int. The low 7 bits are
+         * added first so no channel can carry into the next, then the high
+         * bits are added and any channel which overflowed is set to 255.
+         */
+        int low = (rgb1 & 0x7F7F7F) + (rgb2 & 0x7F7F7F);
+        int overflow = ((rgb1 & rgb2) | ((rgb1 | rgb2) & low)) & 0x808080;
+        int sum = low ^ ((rgb1 ^ rgb2) & 0x808080);
+        return sum | ((overflow << 1) - (overflow >> 7));
+    }
+}
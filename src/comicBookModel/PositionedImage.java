@@ -20,9 +20,15 @@
   */
 package comicBookModel;
 
-import java.awt.Color;
 import java.awt.Point;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.lang.ref.SoftReference;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
 /**
  * A PositionedImage is an BufferedImage with an additional origin property.
  * The origin is always non-negative, and is initially the point (0,0), however
@@ -35,6 +41,90 @@ import java.awt.image.BufferedImage;
 public class PositionedImage extends BufferedImage {
     // Origin is always non-negative
     private Point origin;
+    // The data behind the raster, rgbData for TYPE_INT_RGB images (packed
+    // 0xRRGGBB) and greyData for TYPE_BYTE_GRAY images (one byte per pixel).
+    // Both are laid out row by row with a scanline stride of the width.
+    private final int[] rgbData;
+    private final byte[] greyData;
+    // The summed area table of this image, built when first requested. It is
+    // softly held so it can be dropped and rebuilt if memory runs short.
+    private SoftReference<SummedAreaTable> summedAreaTable;
+    // The pool used by the parallel halftone methods
+    private static final ForkJoinPool POOL = new ForkJoinPool();
+    // Halftone row bands with fewer rows than this are not split any further
+    private static final int MIN_BAND_HEIGHT = 64;
+    // Images with fewer pixels than this are converted to greyscale without
+    // splitting them across the pool
+    private static final int MIN_PARALLEL_PIXELS = 1 << 18;
+    /* The grey colour space is linear, so getRGB/setRGB convert grey samples 
+     * to and from sRGB. These tables hold the same conversions so the data 
+     * can be accessed directly with identical results.
+     */
+    private static final int[] GREY_TO_SRGB = new int[256];
+    private static final byte[] SRGB_TO_GREY = new byte[256];
+    // A grey sample copied with getRGB then setRGB, which is not always the
+    // same sample
+    private static final byte[] GREY_COPY = new byte[256];
+    // The luminance weights setRGB uses, and the weighted linear 16 bit level
+    // of each sRGB channel value
+    private static final float RED_WEIGHT = 0.2125f;
+    private static final float GREEN_WEIGHT = 0.7154f;
+    private static final float BLUE_WEIGHT = 0.0721f;
+    private static final float[] RED_TO_GREY = new float[256];
+    private static final float[] GREEN_TO_GREY = new float[256];
+    private static final float[] BLUE_TO_GREY = new float[256];
+    static {
+        BufferedImage pixel = new BufferedImage(1, 1, BufferedImage.TYPE_BYTE_GRAY);
+        for(int v = 0; v < 256; v++){
+            pixel.getRaster().setSample(0, 0, 0, v);
+            GREY_TO_SRGB[v] = pixel.getRGB(0, 0) & 0xFF;
+            pixel.setRGB(0, 0, (v << 16) | (v << 8) | v);
+            SRGB_TO_GREY[v] = (byte) pixel.getRaster().getSample(0, 0, 0);
+        }
+        for(int v = 0; v < 256; v++){
+            GREY_COPY[v] = SRGB_TO_GREY[GREY_TO_SRGB[v]];
+        }
+        /* setRGB converts a colour into a grey image by looking up the 
+         * linear 16 bit level of each sRGB channel, then weighting them by 
+         * their luminance. The levels are not public, but each is the only
+         * one near the level of the grey which gives the same 16 bit grey
+         * samples for the channels alone and together.
+         */
+        BufferedImage sample = new BufferedImage(1, 1, BufferedImage.TYPE_USHORT_GRAY);
+        for(int v = 0; v < 256; v++){
+            int red = toUShortGrey(sample, v << 16);
+            int green = toUShortGrey(sample, v << 8);
+            int blue = toUShortGrey(sample, v);
+            int grey = toUShortGrey(sample, (v << 16) | (v << 8) | v);
+            int level = grey;
+            for(int l = Math.max(0, grey - 8); l <= Math.min(0xFFFF, grey + 8); l++){
+                if(toGrey(RED_WEIGHT * l, 0f, 0f, 0xFFFF) == red &&
+                   toGrey(0f, GREEN_WEIGHT * l, 0f, 0xFFFF) == green &&
+                   toGrey(0f, 0f, BLUE_WEIGHT * l, 0xFFFF) == blue &&
+                   toGrey(RED_WEIGHT * l, GREEN_WEIGHT * l, BLUE_WEIGHT * l, 0xFFFF) == grey){
+                    level = l;
+                    break;
+                }
+            }
+            RED_TO_GREY[v] = RED_WEIGHT * level;
+            GREEN_TO_GREY[v] = GREEN_WEIGHT * level;
+            BLUE_TO_GREY[v] = BLUE_WEIGHT * level;
+        }
+    }
+    /**
+     * Returns the 16 bit grey sample setRGB gives the colour.
+     */
+    private static int toUShortGrey(BufferedImage sample, int rgb){
+        sample.setRGB(0, 0, rgb);
+        return sample.getRaster().getSample(0, 0, 0);
+    }
+    /**
+     * Returns the grey sample, from 0 to max, of the weighted linear levels
+     * of the red, green and blue channels. The same sum as setRGB.
+     */
+    private static int toGrey(float red, float green, float blue, int max){
+        return (int) ((red + green + blue) / 65535f * max + 0.5f);
+    }
     
     /**
      * Creates a new blank PositionedImage with the origin at (0,0).
@@ -51,6 +141,13 @@ public class PositionedImage extends BufferedImage {
             throw new IllegalArgumentException();
         }
         this.origin = new Point(0, 0);
+        if(imageType == PositionedImage.TYPE_INT_RGB){
+            this.rgbData = ((DataBufferInt) getRaster().getDataBuffer()).getData();
+            this.greyData = null;
+        }else{
+            this.rgbData = null;
+            this.greyData = ((DataBufferByte) getRaster().getDataBuffer()).getData();
+        }
     }
     /**
      * Creates a new PositionedImage copy of a BufferedImage with the origin at (0,0).
@@ -87,13 +184,16 @@ public class PositionedImage extends BufferedImage {
      * origin. The origin coordinates are not changed.
      */
     public PositionedImage reset(int width, int height){
-        // Goes through the image, shifting each poing. Since the origin is 
-        // always non-negative, this won't overwrite itself.
+        // Copies the image a row at a time, shifted by the origin.
         PositionedImage image = new PositionedImage(width, height, this.getType());
-        for(int x = 0; x < width; x++){
-            for(int y = 0; y < height; y++){
-                image.setRGB(x, y, this.getRGB(x + origin.x, y + origin.y));
-            }
+        if(width <= 0 || height <= 0){
+            return image;
+        }
+        if(origin.x + width > getWidth() || origin.y + height > getHeight()){
+            throw new ArrayIndexOutOfBoundsException("Coordinate out of bounds!");
+        }
+        for(int y = 0; y < height; y++){
+            copyRun(image, (y + origin.y) * getWidth() + origin.x, y * width, width);
         }
         return image;
     }
@@ -103,28 +203,120 @@ public class PositionedImage extends BufferedImage {
      */
     PositionedImage toGreyscale(){
         PositionedImage greyscale = new PositionedImage(this.getWidth(), this.getHeight(), PositionedImage.TYPE_BYTE_GRAY);
-        greyscale.addImage(0, 0, this);
+        GreyscaleBand band = new GreyscaleBand(this, greyscale, 0, this.getHeight());
+        if((long) this.getWidth() * this.getHeight() >= MIN_PARALLEL_PIXELS){
+            invoke(band);
+        }else{
+            band.convertBand();
+        }
         return greyscale;
     }
+    /**
+     * A task which converts a band of rows of an image to greyscale, with 
+     * the same result as setRGB. Large bands are split in half until they 
+     * are MIN_BAND_HEIGHT rows.
+     */
+    @SuppressWarnings("serial")
+    private static class GreyscaleBand extends RecursiveAction {
+        private final PositionedImage image, greyscale;
+        private final int startRow, endRow;
+        GreyscaleBand(PositionedImage image, PositionedImage greyscale, int startRow, int endRow){
+            this.image = image;
+            this.greyscale = greyscale;
+            this.startRow = startRow;
+            this.endRow = endRow;
+        }
+        void convertBand(){
+            int start = startRow * image.getWidth();
+            int end = endRow * image.getWidth();
+            byte[] grey = greyscale.greyData;
+            if(image.rgbData == null){
+                for(int i = start; i < end; i++){
+                    grey[i] = GREY_COPY[image.greyData[i] & 0xFF];
+                }
+                return;
+            }
+            int[] rgbData = image.rgbData;
+            for(int i = start; i < end; i++){
+                int rgb = rgbData[i];
+                grey[i] = (byte) toGrey(RED_TO_GREY[(rgb >> 16) & 0xFF], 
+                                        GREEN_TO_GREY[(rgb >> 8) & 0xFF], 
+                                        BLUE_TO_GREY[rgb & 0xFF], 0xFF);
+            }
+        }
+        protected void compute(){
+            if(endRow - startRow <= MIN_BAND_HEIGHT){
+                convertBand();
+            }else{
+                int middle = (startRow + endRow) >>> 1;
+                invokeAll(new GreyscaleBand(image, greyscale, startRow, middle),
+                          new GreyscaleBand(image, greyscale, middle, endRow));
+            }
+        }
+    }
+    // Pixel access methods section
+    /**
+     * Returns the sRGB value, packed as 0xRRGGBB, of the pixel at the 
+     * specified index of the data. The same as getRGB without the alpha.
+     */
+    int getPacked(int index){
+        if(rgbData != null){
+            return rgbData[index] & 0xFFFFFF;
+        }
+        int grey = GREY_TO_SRGB[greyData[index] & 0xFF];
+        return (grey << 16) | (grey << 8) | grey;
+    }
+    /**
+     * Returns the SummedAreaTable of this PositionedImage, which is built on 
+     * the first call and reused by later calls. The image should not be 
+     * changed once this has been called.
+     * @see SummedAreaTable
+     */
+    synchronized SummedAreaTable getSummedAreaTable(){
+        SummedAreaTable table = summedAreaTable == null ? null : summedAreaTable.get();
+        if(table == null){
+            table = new SummedAreaTable(this);
+            summedAreaTable = new SoftReference<SummedAreaTable>(table);
+        }
+        return table;
+    }
+    /**
+     * Sets the pixel at the specified index of the data to the sRGB value 
+     * packed as 0xRRGGBB. The same as setRGB.
+     */
+    private void setPacked(int index, int rgb){
+        if(rgbData != null){
+            rgbData[index] = rgb;
+            return;
+        }
+        int grey = rgb & 0xFF;
+        if(rgb == ((grey << 16) | (grey << 8) | grey)){
+            greyData[index] = SRGB_TO_GREY[grey];
+        }else{
+            // A colour into a grey image needs the full colour conversion
+            super.setRGB(index % getWidth(), index / getWidth(), rgb);
+        }
+    }
+    /**
+     * Copies length pixels from the specified index of the data into image
+     * at the specified index of its data, which must be the same type. The 
+     * same as copying each pixel with getRGB and setRGB.
+     */
+    private void copyRun(PositionedImage image, int index, int iIndex, int length){
+        if(rgbData != null){
+            PixelKernels.get().copy(rgbData, index, image.rgbData, iIndex, length);
+        }else{
+            for(int i = 0; i < length; i++){
+                image.greyData[iIndex + i] = GREY_COPY[greyData[index + i] & 0xFF];
+            }
+        }
+    }
     // Shape Drawing methods section
     /**
-     * Sets the pixel at the specified coordinate (x,y) to the RGB Color.
-     */
-    private void addDot(int x, int y, Color RGB){
-        // Get the corresponding Color on this
-        Color tRGB = new Color(this.getRGB(x, y));
-        // Get the new values
-        int nRed = tRGB.getRed() + RGB.getRed();
-        int nGreen = tRGB.getGreen() + RGB.getGreen();
-        int nBlue = tRGB.getBlue() + RGB.getBlue();
-        // Check they aren't maxed out
-        if(nRed > 255){nRed = 255;}
-        if(nGreen > 255){nGreen = 255;}
-        if(nBlue > 255){nBlue = 255;}
-        // Set the pixel
-        Color nColor = new Color(nRed, nGreen, nBlue);
-        int nRGB = nColor.getRGB();
-        this.setRGB(x, y, nRGB);
+     * Adds the RGB Color to the pixel at the specified index of the data.
+     */
+    private void addDot(int index, int rgb){
+        setPacked(index, PixelKernels.addSaturated(getPacked(index), rgb));
     }
     /**
      * Adds the image ontop of this PositionedImage with it's top left corner 
@@ -133,31 +325,61 @@ public class PositionedImage extends BufferedImage {
      * cut off at the boundaries of this PositionedImage.
      */
     private void addImage(int x, int y, BufferedImage image){
-        // Go through the pixels one at a time
-        for(int i = 0; i < image.getWidth() && x + i < this.getWidth(); i++){
-            for(int j = 0; j < image.getHeight() && y + j < this.getHeight(); j++){
+        int width = Math.min(image.getWidth(), this.getWidth() - x);
+        int height = Math.min(image.getHeight(), this.getHeight() - y);
+        if(width <= 0 || height <= 0){
+            return;
+        }
+        // RGB PositionedImages onto RGB are added a row at a time by the 
+        // PixelKernels
+        if(this.rgbData != null && image instanceof PositionedImage 
+                && ((PositionedImage) image).rgbData != null){
+            int[] iData = ((PositionedImage) image).rgbData;
+            PixelKernels kernels = PixelKernels.get();
+            for(int j = 0; j < height; j++){
+                kernels.addSaturated(rgbData, (y + j) * this.getWidth() + x, 
+                                     iData, j * image.getWidth(), width);
+            }
+            return;
+        }
+        // Other BufferedImages are read a row at a time
+        int[] row = image instanceof PositionedImage ? null : new int[width];
+        // Go through the pixels a row at a time
+        for(int j = 0; j < height; j++){
+            if(row != null){
+                image.getRGB(0, j, width, 1, row, 0, width);
+            }
+            int index = (y + j) * this.getWidth() + x;
+            int iIndex = j * image.getWidth();
+            for(int i = 0; i < width; i++){
                 // Add the pixel in the new image
-                Color iRGB = new Color(image.getRGB(i, j));
-                this.addDot(x+i, y+j, iRGB);
+                int iRGB = row != null ? row[i] & 0xFFFFFF
+                                       : ((PositionedImage) image).getPacked(iIndex + i);
+                this.addDot(index + i, iRGB);
             }
         }
     }
     /**
-     * Draws a circle, with radius r and centred at the specified 
-     * coordinate (x,y), onto this PositionedImage.
+     * Adds the DotStamp, centred on the pixel (x,y), onto this PositionedImage.
+     * Only the parts of the stamp between startRow (inclusive) and endRow 
+     * (exclusive) are drawn.
+     * @param unit The Color added for each unit of the stamps strength, 
+     * packed as 0xRRGGBB
      */
-    void addCircle(int x, int y, double r, Color color){
-        // Make sure region within bounds of image
-        int startX = x - (int) r < 0 ? 0 : x - (int) r;
-        int endX = x + (int) r + 1 < this.getWidth() ? x + (int) r + 1 : this.getWidth() - 1;
-        int startY = y - (int) r < 0 ? 0 : y - (int) r;
-        int endY = y + (int) r + 1 < this.getHeight() ? y + (int) r + 1 : this.getHeight() - 1;
-        // Go through each pixel
-        for(int i = startX; i <= endX; i++){
-            for(int j = startY; j <= endY; j++){
-                // If inside circle
-                if((i-x)*(i-x) + (j-y)*(j-y) <= r*r){
-                    this.addDot(i, j, color);
+    void addStamp(DotStamp stamp, int x, int y, int unit, int startRow, int endRow){
+        int reach = stamp.getReach();
+        // Make sure region within bounds of image and the requested rows
+        int startI = x - reach < 0 ? -x : -reach;
+        int endI = x + reach >= this.getWidth() ? this.getWidth() - 1 - x : reach;
+        int startJ = y - reach < startRow ? startRow - y : -reach;
+        int endJ = y + reach >= endRow ? endRow - 1 - y : reach;
+        // Go through each pixel a row at a time
+        for(int j = startJ; j <= endJ; j++){
+            int index = (y + j) * this.getWidth() + x;
+            for(int i = startI; i <= endI; i++){
+                int strength = stamp.getStrength(i, j);
+                if(strength != 0){
+                    this.addDot(index + i, strength * unit);
                 }
             }
         }
@@ -172,10 +394,23 @@ public class PositionedImage extends BufferedImage {
      * @return A copy of this PositionedImage with halftone applied
      */
     public PositionedImage toHalftone(int size){
+        return toHalftone(size, false);
+    }
+    /**
+     * The same as toHalftone(int), however if parallel is true the colour 
+     * channels are halftoned concurrently, and each channel is split into 
+     * bands of rows which are drawn across the available cores. The result 
+     * is identical either way.
+     * @param size Height and width of each halftone area
+     * @param parallel True to use the parallel implementation
+     * @return A copy of this PositionedImage with halftone applied
+     * @see #toHalftone(int)
+     */
+    public PositionedImage toHalftone(int size, boolean parallel){
         if(this.getType() == PositionedImage.TYPE_BYTE_GRAY){
-            return toHalftoneBW(size, 15d);
+            return toHalftoneBW(size, 15d, parallel);
         }else{
-            return toHalftoneRGB(size, -15d, 7.5d, 30d);
+            return toHalftoneRGB(size, -15d, 7.5d, 30d, parallel);
         }
     }
     /**
@@ -187,12 +422,14 @@ public class PositionedImage extends BufferedImage {
      * applied
      */
     PositionedImage toHalftoneBW(int size, double angle){
-        PositionedImage bw;
-        bw = this.rotate(Math.toRadians(angle));
-        bw = bw.toHalftone(size, true, true, true);
-        bw = bw.rotate(Math.toRadians(-angle));
-        bw = bw.reset(this.getWidth(), this.getHeight());
-        return bw;
+        return toHalftoneBW(size, angle, false);
+    }
+    /**
+     * @see #toHalftoneBW(int, double)
+     * @param parallel True to draw the halftone in parallel bands of rows
+     */
+    PositionedImage toHalftoneBW(int size, double angle, boolean parallel){
+        return toHalftoneChannel(size, angle, true, true, true, parallel);
     }
     /**
      * Returns a copy of this PositionedImage with red, green, and blue 
@@ -204,27 +441,115 @@ public class PositionedImage extends BufferedImage {
      * @return A copy of this PositionedImage with halftone applied
      */
     PositionedImage toHalftoneRGB(int size, double rAngle, double gAngle, double bAngle){
+        return toHalftoneRGB(size, rAngle, gAngle, bAngle, false);
+    }
+    /**
+     * @see #toHalftoneRGB(int, double, double, double)
+     * @param parallel True to halftone the red, green and blue channels 
+     * concurrently, each drawn in parallel bands of rows
+     */
+    PositionedImage toHalftoneRGB(int size, double rAngle, double gAngle, double bAngle, boolean parallel){
         PositionedImage red, green, blue;
-        red = this.rotate(Math.toRadians(rAngle));
-        red = red.toHalftone(size, true, false, false);
-        red = red.rotate(Math.toRadians(-rAngle));
-        red = red.reset(this.getWidth(), this.getHeight());
-        
-        green = this.rotate(Math.toRadians(gAngle));
-        green = green.toHalftone(size, false, true, false);
-        green = green.rotate(Math.toRadians(-gAngle));
-        green = green.reset(this.getWidth(), this.getHeight());
-        
-        blue = this.rotate(Math.toRadians(bAngle));
-        blue = blue.toHalftone(size, false, false, true);
-        blue = blue.rotate(Math.toRadians(-bAngle));
-        blue = blue.reset(this.getWidth(), this.getHeight());
+        if(parallel){
+            ForkJoinTask<PositionedImage> rTask, gTask, bTask;
+            rTask = POOL.submit(new HalftoneChannel(this, size, rAngle, true, false, false));
+            gTask = POOL.submit(new HalftoneChannel(this, size, gAngle, false, true, false));
+            bTask = POOL.submit(new HalftoneChannel(this, size, bAngle, false, false, true));
+            red = rTask.join();
+            green = gTask.join();
+            blue = bTask.join();
+        }else{
+            red = toHalftoneChannel(size, rAngle, true, false, false, false);
+            green = toHalftoneChannel(size, gAngle, false, true, false, false);
+            blue = toHalftoneChannel(size, bAngle, false, false, true, false);
+        }
 
         red.addImage(0, 0, green);
         red.addImage(0, 0, blue);
         
         return red;
     }
+    /**
+     * Applies the same halftone effect as toHalftone(int), however each screen
+     * is drawn in a single pass by walking a rotated lattice of dots over this
+     * PositionedImage. The image is never rotated, so no enlarged intermediate
+     * images are created and every screen angle costs the same. The screens
+     * have the same sizes and angles as those of toHalftone(int), but the 
+     * lattice is fixed to (0,0) of this image rather than to the corner of 
+     * the enlarged rotated image. The result is an equivalent screen with a
+     * different phase, its dots can be up to about size/2 from those of 
+     * toHalftone(int).
+     * @param size Height and width of each halftone area
+     * @param parallel True to draw the screens in parallel bands of rows
+     * @return A copy of this PositionedImage with halftone applied
+     * @see #toHalftone(int)
+     */
+    public PositionedImage toLatticeHalftone(int size, boolean parallel){
+        return drawScreens(latticeScreens(size, this.getType()), parallel);
+    }
+    /**
+     * Returns the screens used by toLatticeHalftone(int, boolean) for an
+     * image of the specified type.
+     * @param size Height and width of each halftone area
+     * @param type TYPE_BYTE_GRAY or TYPE_INT_RGB
+     * @see #toLatticeHalftone(int, boolean)
+     */
+    static HalftoneScreen[] latticeScreens(int size, int type){
+        if(type == PositionedImage.TYPE_BYTE_GRAY){
+            return new HalftoneScreen[]{new HalftoneScreen(size, 15d, true, true, true)};
+        }else{
+            return new HalftoneScreen[]{new HalftoneScreen(size, -15d, true, false, false),
+                                        new HalftoneScreen(size, 7.5d, false, true, false),
+                                        new HalftoneScreen(size, 30d, false, false, true)};
+        }
+    }
+    /**
+     * Returns a copy of this PositionedImage with black and white halftone
+     * drawn directly from a lattice at the specified angle.
+     * @param size Height and width of each halftone area
+     * @param angle The angle of the halftone effect in degrees
+     * @param parallel True to draw the screen in parallel bands of rows
+     * @see #toLatticeHalftone(int, boolean)
+     */
+    PositionedImage toLatticeHalftoneBW(int size, double angle, boolean parallel){
+        HalftoneScreen[] screens = {new HalftoneScreen(size, angle, true, true, true)};
+        return drawScreens(screens, parallel);
+    }
+    /**
+     * Returns a copy of this PositionedImage with red, green, and blue 
+     * halftone drawn directly from lattices at the specified angles. All three
+     * screens are drawn onto the same image.
+     * @param size Height and width of each halftone area
+     * @param rAngle The angle of the red halftone effect in degrees
+     * @param gAngle The angle of the green halftone effect in degrees
+     * @param bAngle The angle of the blue halftone effect in degrees
+     * @param parallel True to draw the screens in parallel bands of rows
+     * @see #toLatticeHalftone(int, boolean)
+     */
+    PositionedImage toLatticeHalftoneRGB(int size, double rAngle, double gAngle, double bAngle, boolean parallel){
+        HalftoneScreen[] screens = {new HalftoneScreen(size, rAngle, true, false, false),
+                                    new HalftoneScreen(size, gAngle, false, true, false),
+                                    new HalftoneScreen(size, bAngle, false, false, true)};
+        return drawScreens(screens, parallel);
+    }
+    /**
+     * Returns a copy of this PositionedImage with a single halftone channel
+     * applied at the specified angle. The image is rotated, halftoned, then
+     * rotated back and cropped to this PositionedImages size.
+     * @param size Height and width of each halftone area
+     * @param angle The angle of the halftone effect in degrees
+     * @param parallel True to draw the halftone in parallel bands of rows
+     * @see #toHalftone(int, boolean, boolean, boolean)
+     */
+    private PositionedImage toHalftoneChannel(int size, double angle, boolean red, 
+            boolean green, boolean blue, boolean parallel){
+        PositionedImage channel;
+        channel = this.rotate(Math.toRadians(angle));
+        channel = channel.toHalftone(size, red, green, blue, parallel);
+        channel = channel.rotate(Math.toRadians(-angle));
+        channel = channel.reset(this.getWidth(), this.getHeight());
+        return channel;
+    }
     /**
      * Returns a copy of this PositionedImage with halftone of the specified
      * size applied.
@@ -235,6 +560,13 @@ public class PositionedImage extends BufferedImage {
      * @return A copy of this PositionedImage with 1 channel halftone applied
      */
     PositionedImage toHalftone(int size, boolean red, boolean green, boolean blue){
+        return toHalftone(size, red, green, blue, false);
+    }
+    /**
+     * @see #toHalftone(int, boolean, boolean, boolean)
+     * @param parallel True to draw the halftone in parallel bands of rows
+     */
+    PositionedImage toHalftone(int size, boolean red, boolean green, boolean blue, boolean parallel){
         /* Goes through the image a size step at a time, both horizontally and 
          * vertically. For that pixel the requested channels are taken. I then
          * create a circle with the same total amount of the requested channels,
@@ -254,24 +586,240 @@ public class PositionedImage extends BufferedImage {
          * radius is impossible by analytical methods (I think) and I have decided
          * too computationally expensive to do.
          */
+        HalftoneScreen[] screens = {new HalftoneScreen(size, 0d, red, green, blue)};
+        return drawScreens(screens, parallel);
+    }
+    /**
+     * Returns a blank copy of this PositionedImage with the halftone screens
+     * drawn onto it.
+     * @param parallel True to draw the screens in parallel bands of rows
+     */
+    private PositionedImage drawScreens(HalftoneScreen[] screens, boolean parallel){
+        PositionedImage pImage = blankCopy();
+        drawScreens(screens, pImage, 0, this.getHeight(), 0, this.getHeight(), parallel);
+        return pImage;
+    }
+    /**
+     * Returns a blank PositionedImage with the same size, type and origin as
+     * this PositionedImage.
+     */
+    PositionedImage blankCopy(){
         PositionedImage pImage = new PositionedImage(this.getWidth(), this.getHeight(), this.getType());
         pImage.origin = this.origin;
-        // The new Color and divisor = noOfColors * 255
-        Color nColor = new Color(red ? 128 : 0, green ? 128 : 0, blue ? 128 : 0);
-        double div = (red ? 255 : 0) + (green ? 255 : 0) + (blue ? 255 : 0);
-        // Go through each map of length size
-        for(int x = 0; x < this.getWidth(); x += size){
-            for(int y = 0; y < this.getHeight(); y += size){
-                Color c = new Color(this.getRGB(x, y));
-                // Calculate the fraction of requested red, green, blue
-                double frac = ((red ? c.getRed() : 0) + (green ? c.getGreen() : 0) + (blue ? c.getBlue() : 0)) / div;
-                // Calculate the circles radius
-                double radius = size*Math.sqrt(2 * frac / Math.PI);
-                pImage.addCircle(x, y, radius, nColor);
+        return pImage;
+    }
+    /**
+     * Draws the halftone screens onto pImage between startRow (inclusive)
+     * and endRow (exclusive), where this PositionedImage is a band of rows of
+     * a larger image starting at row offsetY.
+     * @param pImage The image the dots are drawn onto, the same size as this
+     * @param offsetY The row of the larger image at row 0 of this
+     * @param imageHeight The height of the larger image
+     * @param parallel True to draw the screens in parallel bands of rows
+     * @see HalftoneScreen#draw(PositionedImage, PositionedImage, int, int, int, int)
+     */
+    void drawScreens(HalftoneScreen[] screens, PositionedImage pImage, int startRow, 
+            int endRow, int offsetY, int imageHeight, boolean parallel){
+        HalftoneBand band = new HalftoneBand(this, pImage, screens, startRow, endRow, 
+                offsetY, imageHeight);
+        if(parallel){
+            invoke(band);
+        }else{
+            band.drawBand();
+        }
+    }
+    /**
+     * Invokes the task in the halftone pool, or in the current pool if 
+     * already running in one.
+     */
+    private static <T> T invoke(ForkJoinTask<T> task){
+        return ForkJoinTask.inForkJoinPool() ? task.invoke() : POOL.invoke(task);
+    }
+    /**
+     * A task which calculates a single halftone channel of an image.
+     * @see PositionedImage#toHalftoneChannel(int, double, boolean, boolean, boolean, boolean)
+     */
+    @SuppressWarnings("serial")
+    private static class HalftoneChannel extends RecursiveTask<PositionedImage> {
+        private final PositionedImage image;
+        private final int size;
+        private final double angle;
+        private final boolean red, green, blue;
+        HalftoneChannel(PositionedImage image, int size, double angle, boolean red, 
+                boolean green, boolean blue){
+            this.image = image;
+            this.size = size;
+            this.angle = angle;
+            this.red = red;
+            this.green = green;
+            this.blue = blue;
+        }
+        protected PositionedImage compute(){
+            return image.toHalftoneChannel(size, angle, red, green, blue, true);
+        }
+    }
+    /**
+     * A task which draws the halftone screens within a band of rows. Large
+     * bands are split in half until they are MIN_BAND_HEIGHT rows. Each band
+     * only writes its own rows, and draws the dots reaching them in the same
+     * order as a single band would, so the result does not depend on how the
+     * rows are split.
+     * @see HalftoneScreen#draw(PositionedImage, PositionedImage, int, int, int, int)
+     */
+    @SuppressWarnings("serial")
+    private static class HalftoneBand extends RecursiveAction {
+        private final PositionedImage image, pImage;
+        private final HalftoneScreen[] screens;
+        private final int startRow, endRow, offsetY, imageHeight;
+        HalftoneBand(PositionedImage image, PositionedImage pImage, HalftoneScreen[] screens, 
+                int startRow, int endRow, int offsetY, int imageHeight){
+            this.image = image;
+            this.pImage = pImage;
+            this.screens = screens;
+            this.startRow = startRow;
+            this.endRow = endRow;
+            this.offsetY = offsetY;
+            this.imageHeight = imageHeight;
+        }
+        void drawBand(){
+            for(HalftoneScreen screen : screens){
+                screen.draw(image, pImage, startRow, endRow, offsetY, imageHeight);
             }
-        } 
+        }
+        protected void compute(){
+            if(endRow - startRow <= MIN_BAND_HEIGHT){
+                drawBand();
+            }else{
+                int middle = (startRow + endRow) >>> 1;
+                invokeAll(new HalftoneBand(image, pImage, screens, startRow, middle, 
+                                           offsetY, imageHeight),
+                          new HalftoneBand(image, pImage, screens, middle, endRow, 
+                                           offsetY, imageHeight));
+            }
+        }
+    }
+    // CMYK halftone methods section
+    /**
+     * Returns an RGB copy of this PositionedImage with CMYK halftone applied.
+     * The image is separated into cyan, magenta, yellow and black inks, with
+     * the grey component of each pixel replaced by black. Each ink is 
+     * screened at its own angle, cyan 15, magenta 75, yellow 0 and black 45
+     * degrees, and the inks are printed over white, each taking away the 
+     * light it absorbs.
+     * @param size Height and width of each halftone area
+     * @param parallel True to draw the four screens in parallel
+     * @return An RGB copy of this PositionedImage with CMYK halftone applied
+     * @see #toLatticeHalftone(int, boolean)
+     */
+    public PositionedImage toCMYKHalftone(int size, boolean parallel){
+        int width = this.getWidth();
+        int height = this.getHeight();
+        // Separate the inks, cyan, magenta and yellow as red, green and blue
+        // and black in all three
+        PositionedImage inks = new PositionedImage(width, height, PositionedImage.TYPE_INT_RGB);
+        PositionedImage black = new PositionedImage(width, height, PositionedImage.TYPE_INT_RGB);
+        for(int i = 0; i < width * height; i++){
+            int rgb = this.getPacked(i);
+            int c = 255 - ((rgb >> 16) & 0xFF);
+            int m = 255 - ((rgb >> 8) & 0xFF);
+            int y = 255 - (rgb & 0xFF);
+            int k = Math.min(c, Math.min(m, y));
+            inks.rgbData[i] = ((c - k) << 16) | ((m - k) << 8) | (y - k);
+            black.rgbData[i] = k * 0x010101;
+        }
+        // Draw each screen onto its own plate
+        HalftoneScreen[] screens = cmykScreens(size);
+        PositionedImage[] sources = {inks, inks, inks, black};
+        final HalftoneBand[] plates = new HalftoneBand[screens.length];
+        for(int i = 0; i < screens.length; i++){
+            PositionedImage plate = new PositionedImage(width, height, PositionedImage.TYPE_INT_RGB);
+            plates[i] = new HalftoneBand(sources[i], plate, new HalftoneScreen[]{screens[i]}, 
+                                         0, height, 0, height);
+        }
+        if(parallel){
+            @SuppressWarnings("serial")
+            RecursiveAction all = new RecursiveAction(){
+                protected void compute(){
+                    invokeAll(plates);
+                }
+            };
+            invoke(all);
+        }else{
+            for(HalftoneBand plate : plates){
+                plate.drawBand();
+            }
+        }
+        // Add up the inks, then take them away from white
+        PositionedImage pImage = plates[0].pImage;
+        for(int i = 1; i < plates.length; i++){
+            pImage.addImage(0, 0, plates[i].pImage);
+        }
+        for(int i = 0; i < width * height; i++){
+            pImage.rgbData[i] = ~pImage.rgbData[i] & 0xFFFFFF;
+        }
+        pImage.origin = this.origin;
         return pImage;
-    }    
+    }
+    /**
+     * Returns the screens used by toCMYKHalftone(int, boolean), cyan, 
+     * magenta, yellow and black in that order. Cyan, magenta and yellow are 
+     * taken from and drawn onto the red, green and blue channels, and black
+     * all three.
+     * @param size Height and width of each halftone area
+     * @see #toCMYKHalftone(int, boolean)
+     */
+    static HalftoneScreen[] cmykScreens(int size){
+        return new HalftoneScreen[]{new HalftoneScreen(size, 15d, true, false, false),
+                                    new HalftoneScreen(size, 75d, false, true, false),
+                                    new HalftoneScreen(size, 0d, false, false, true),
+                                    new HalftoneScreen(size, 45d, true, true, true)};
+    }
+    // Threshold screening methods section
+    /**
+     * Returns a copy of this PositionedImage screened with the threshold 
+     * matrix, which is repeated over the image from (0,0). Each channel of 
+     * each pixel is compared once to the threshold under it and set to 0 or
+     * 255. The image is read and written a row at a time directly from the 
+     * data in a single pass, without creating any other objects.
+     * @param matrix The ThresholdMatrix to screen with
+     * @return A copy of this PositionedImage with threshold screening applied
+     */
+    public PositionedImage toScreened(ThresholdMatrix matrix){
+        PositionedImage screened = new PositionedImage(this.getWidth(), this.getHeight(), this.getType());
+        screenRows(matrix, screened, 0, this.getHeight());
+        return screened;
+    }
+    /**
+     * Screens this PositionedImage with the threshold matrix onto screened 
+     * between startRow (inclusive) and endRow (exclusive).
+     * @see #toScreened(ThresholdMatrix)
+     */
+    void screenRows(ThresholdMatrix matrix, PositionedImage screened, int startRow, int endRow){
+        int width = this.getWidth();
+        int size = matrix.getSize();
+        int[] thresholds = matrix.getThresholds();
+        for(int y = startRow; y < endRow; y++){
+            int index = y * width;
+            int row = (y % size) * size;
+            // The column of the matrix, which wraps around every size pixels
+            int column = 0;
+            for(int x = 0; x < width; x++){
+                int t = thresholds[row + column];
+                if(rgbData != null){
+                    int c = rgbData[index + x];
+                    screened.rgbData[index + x] = (((c >> 16) & 0xFF) > t ? 0xFF0000 : 0)
+                                                | (((c >> 8) & 0xFF) > t ? 0x00FF00 : 0)
+                                                | ((c & 0xFF) > t ? 0x0000FF : 0);
+                }else{
+                    int c = GREY_TO_SRGB[greyData[index + x] & 0xFF];
+                    screened.greyData[index + x] = c > t ? SRGB_TO_GREY[255] : SRGB_TO_GREY[0];
+                }
+                if(++column == size){
+                    column = 0;
+                }
+            }
+        }
+    }
     /**
      * Returns a new PositionedImage which is a copy of this PositionedImage
      * rotated by the specified number of radians. Note this inversion
@@ -378,21 +926,26 @@ public class PositionedImage extends BufferedImage {
         int sHeight = (shear < 0) ? height - offset + (int) Math.ceil((-1 * origin.x) * shear) 
                                   : height - offset + (int) Math.floor((width - 1 - origin.x) * shear); 
         PositionedImage sImage = new PositionedImage(width, sHeight, getType());
-        // Go through current layer one pixel at a time
+        // Calculate the shift of each column
+        int[] shifts = new int[width];
         for(int x = 0; x < width; x++){
-            for(int y = 0; y < height; y++){
-                // Calculate the corresponding row in the new layer
-                int shift = (shear < 0) ? (int)  Math.ceil((x - origin.x) * shear) 
-                                        : (int) Math.floor((x - origin.x) * shear);
-                // Copy to the new layer
-                int sY = y - offset + shift;
-                sImage.setRGB(x, sY, getRGB(x, y));
-                // On origin loop, setup the new layers origin
-                if(x == origin.x && y == origin.y){
-                    sImage.origin = new Point(x, sY);
-                }
+            shifts[x] = (shear < 0) ? (int)  Math.ceil((x - origin.x) * shear) 
+                                    : (int) Math.floor((x - origin.x) * shear);
+        }
+        // Go through current layer one row at a time, copying each run of 
+        // columns with the same shift to the corresponding row in the new 
+        // layer
+        for(int y = 0; y < height; y++){
+            for(int start = 0, end; start < width; start = end){
+                for(end = start + 1; end < width && shifts[end] == shifts[start]; end++);
+                int sY = y - offset + shifts[start];
+                copyRun(sImage, y * width + start, sY * width + start, end - start);
             }
         }
+        // Setup the new layers origin
+        if(origin.x < width && origin.y < height){
+            sImage.origin = new Point(origin.x, origin.y - offset + shifts[origin.x]);
+        }
         // Return the new layer
         return sImage;    
     }
@@ -415,19 +968,17 @@ public class PositionedImage extends BufferedImage {
         int sWidth = (shear < 0) ? width - offset + (int) Math.ceil((-1 * origin.y) * shear) 
                                  : width - offset + (int) Math.floor((height - 1 - origin.y) * shear); 
         PositionedImage sImage = new PositionedImage(sWidth, height, getType());
-        // Go through current layer one pixel at a time
-        for(int x = 0; x < width; x++){
-            for(int y = 0; y < height; y++){
-                // Calculate the corresponding row in the new layer
-                int shift = (shear < 0) ? (int)  Math.ceil((y - origin.y) * shear) 
-                                        : (int) Math.floor((y - origin.y) * shear);
-                // Copy to the new layer
-                int sX = x - offset + shift;
-                sImage.setRGB(sX, y, getRGB(x, y));
-                // On origin loop, setup the new layers origin
-                if(x == origin.x && y == origin.y){
-                    sImage.origin = new Point(sX, y);
-                }
+        // Go through current layer one row at a time
+        for(int y = 0; y < height; y++){
+            // Calculate the corresponding column in the new layer
+            int shift = (shear < 0) ? (int)  Math.ceil((y - origin.y) * shear) 
+                                    : (int) Math.floor((y - origin.y) * shear);
+            // Copy the row to the new layer
+            int sX = -offset + shift;
+            copyRun(sImage, y * width, y * sWidth + sX, width);
+            // On origin row, setup the new layers origin
+            if(y == origin.y && origin.x < width){
+                sImage.origin = new Point(origin.x + sX, y);
             }
         }
         // Return the new layer
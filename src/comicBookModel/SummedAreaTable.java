@@ -0,0 +1,109 @@
+ /*
+  * Comic Book Creator - A program for creating a comic book photo album.
+  * Copyright (C) 2013  Alastair Crowe
+  *
+  * This code is free software; you can redistribute it and/or modify it
+  * under the terms of the GNU General Public License version 2 only, as
+  * published by the Free Software Foundation.
+  *
+  * This code is distributed in the hope that it will be useful, but WITHOUT
+  * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+  * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+  * version 2 for more details.
+  
+  * You should have received a copy of the GNU General Public License version
+  * 2 along with this work; if not, write to the Free Software Foundation,
+  * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+  *
+  * Please contact comicbookhelp@gmail.com if you need additional information
+  * or have any questions.
+  */
+package comicBookModel;
+
+/**
+ * A SummedAreaTable holds, for every pixel of a PositionedImage, the sum of
+ * each colour channel over the rectangle from (0,0) to that pixel. The sum or
+ * mean of a channel over any rectangle of the image is then found from 4 
+ * entries of the table, whatever the rectangles size.
+ * 
+ * The sums are held in ints and are allowed to overflow. Since the
+ * rectangle sums are found by adding and subtracting entries the overflow
+ * cancels, so a rectangle sum is exact provided it is less than 
+ * Integer.MAX_VALUE (any rectangle under 8 million pixels).
+ * @see PositionedImage#getSummedAreaTable()
+ */
+class SummedAreaTable {
+    private final int width;
+    private final int height;
+    // Tables of (width + 1) * (height + 1) entries. The first row and column
+    // are 0. RGB images have a red, green and blue table, greyscale images
+    // have a single table shared by all 3 channels.
+    private final int[] red, green, blue;
+    /**
+     * Creates the SummedAreaTable of the image, using the same sRGB values
+     * as getRGB.
+     */
+    SummedAreaTable(PositionedImage image){
+        this.width = image.getWidth();
+        this.height = image.getHeight();
+        int stride = width + 1;
+        boolean grey = image.getType() == PositionedImage.TYPE_BYTE_GRAY;
+        red = new int[stride * (height + 1)];
+        green = grey ? red : new int[stride * (height + 1)];
+        blue = grey ? red : new int[stride * (height + 1)];
+        // Each entry is the entry above plus the sum of its row so far
+        for(int y = 0; y < height; y++){
+            int rSum = 0, gSum = 0, bSum = 0;
+            int above = y * stride + 1;
+            int index = above + stride;
+            for(int x = 0; x < width; x++){
+                int c = image.getPacked(y * width + x);
+                if(grey){
+                    rSum += c & 0xFF;
+                    red[index + x] = red[above + x] + rSum;
+                }else{
+                    rSum += (c >> 16) & 0xFF;
+                    gSum += (c >> 8) & 0xFF;
+                    bSum += c & 0xFF;
+                    red[index + x] = red[above + x] + rSum;
+                    green[index + x] = green[above + x] + gSum;
+                    blue[index + x] = blue[above + x] + bSum;
+                }
+            }
+        }
+    }
+    /**
+     * Returns the sum of the table over the rectangle from (x0,y0) inclusive
+     * to (x1,y1) exclusive.
+     */
+    private int sum(int[] table, int x0, int y0, int x1, int y1){
+        int stride = width + 1;
+        return table[y1 * stride + x1] - table[y0 * stride + x1]
+             - table[y1 * stride + x0] + table[y0 * stride + x0];
+    }
+    /**
+     * Returns the mean value of the requested channels added together over 
+     * the rectangle from (x0,y0) inclusive to (x1,y1) exclusive. This is from
+     * 0 to 255 times the number of channels requested, e.g. up to 765 with 
+     * all three.
+     * The rectangle is clipped to the image, and 0 is returned if nothing of
+     * it remains.
+     * @param red True to include the red channel
+     * @param green True to include the green channel
+     * @param blue True to include the blue channel
+     */
+    double mean(boolean red, boolean green, boolean blue, int x0, int y0, int x1, int y1){
+        // Make sure region within bounds of image
+        if(x0 < 0){x0 = 0;}
+        if(y0 < 0){y0 = 0;}
+        if(x1 > width){x1 = width;}
+        if(y1 > height){y1 = height;}
+        if(x0 >= x1 || y0 >= y1){
+            return 0d;
+        }
+        int total = (red ? sum(this.red, x0, y0, x1, y1) : 0) 
+                  + (green ? sum(this.green, x0, y0, x1, y1) : 0) 
+                  + (blue ? sum(this.blue, x0, y0, x1, y1) : 0);
+        return (double) total / ((x1 - x0) * (y1 - y0));
+    }
+}
@@ -26,7 +26,6 @@ import java.awt.FontMetrics;
 import java.awt.Graphics2D;
 import java.awt.Paint;
 import java.awt.Rectangle;
-import java.awt.image.BufferedImage;
 
 /**
  * An ImageLayer is a Layer which has an text for it's contents. 
@@ -39,6 +38,9 @@ public class TextLayer extends Layer {
     public Paint TEXT_PAINT = Color.BLACK;
     Font TEXT_FONT = new Font(Font.SANS_SERIF, Font.BOLD, 16);
     public Paint BACKGROUND_PAINT = Color.WHITE;
+    // The public paints as last seen by propertiesChanged()
+    private Paint SEEN_TEXT_PAINT = TEXT_PAINT;
+    private Paint SEEN_BACKGROUND_PAINT = BACKGROUND_PAINT;
     /**
      * Creates a TextLayer of specified height and width.
      * @see Layer#Layer(int, int)
@@ -46,6 +48,23 @@ public class TextLayer extends Layer {
     TextLayer(int width, int height) {
         super(width, height);
     }
+    /**
+     * Creates a copy of the specified TextLayer.
+     * @see Layer#snapshot()
+     */
+    private TextLayer(TextLayer layer) {
+        super(layer);
+        TEXT = layer.TEXT;
+        TEXT_PAINT = layer.TEXT_PAINT;
+        TEXT_FONT = layer.TEXT_FONT;
+        BACKGROUND_PAINT = layer.BACKGROUND_PAINT;
+    }
+    /**
+     * @see Layer#copy()
+     */
+    protected Layer copy(){
+        return new TextLayer(this);
+    }
     /**
      * Appends the char to the end of this TextLayers text.
      */
@@ -73,6 +92,7 @@ public class TextLayer extends Layer {
         }else{
             TEXT += s;
         }
+        modified();
     }
     /**
      * Scales the contents by the specified factor.
@@ -83,12 +103,21 @@ public class TextLayer extends Layer {
         TEXT_FONT = TEXT_FONT.deriveFont((float)(factor * TEXT_FONT.getSize2D()));
     }
     /**
-     * Returns a BufferedImage of this TextLayer.
+     * Also checks the text and background paints, which are set directly.
+     * @see Layer#propertiesChanged()
+     */
+    protected boolean propertiesChanged(){
+        boolean changed = super.propertiesChanged() || TEXT_PAINT != SEEN_TEXT_PAINT
+                || BACKGROUND_PAINT != SEEN_BACKGROUND_PAINT;
+        SEEN_TEXT_PAINT = TEXT_PAINT;
+        SEEN_BACKGROUND_PAINT = BACKGROUND_PAINT;
+        return changed;
+    }
+    /**
+     * Draws this TextLayer onto the Graphics2D.
+     * @see Layer#draw(Graphics2D)
      */
-    BufferedImage toImage(){
-        // Create alpha image
-        BufferedImage newImage = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_ARGB);
-        Graphics2D g = newImage.createGraphics();
+    protected void draw(Graphics2D g){
         // Clip to the border
         g.setClip(BORDER);
         // Fill the background
@@ -110,8 +139,7 @@ public class TextLayer extends Layer {
         // Reset the clipping region
         g.setClip(0, 0, getWidth(), getHeight());
         // Draw the border
-        drawBorderGrid(g);
-        return newImage;
+        drawBorder(g);
     }
     /**
      * Text is written within the bounding rectangle of the border. This method
@@ -0,0 +1,267 @@
+ /*
+  * Comic Book Creator - A program for creating a comic book photo album.
+  * Copyright (C) 2013  Alastair Crowe
+  *
+  * This code is free software; you can redistribute it and/or modify it
+  * under the terms of the GNU General Public License version 2 only, as
+  * published by the Free Software Foundation.
+  *
+  * This code is distributed in the hope that it will be useful, but WITHOUT
+  * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+  * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+  * version 2 for more details.
+  
+  * You should have received a copy of the GNU General Public License version
+  * 2 along with this work; if not, write to the Free Software Foundation,
+  * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+  *
+  * Please contact comicbookhelp@gmail.com if you need additional information
+  * or have any questions.
+  */
+package comicBookModel;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+/**
+ * A ThresholdMatrix is a square tile of thresholds, from 0 to 254, which is
+ * repeated over an image to screen it. A channel of a pixel is switched fully
+ * on if its value is greater than the threshold at that pixel, and off 
+ * otherwise, so screening costs one compare per channel. The order the 
+ * thresholds are laid out in gives the screen its look.
+ * @see PositionedImage#toScreened(ThresholdMatrix)
+ */
+public class ThresholdMatrix {
+    /**
+     * An 8x8 clustered-dot screen, dots grow out from the centre of each tile.
+     */
+    public static final ThresholdMatrix CLUSTERED_DOT = new ThresholdMatrix("Clustered Dot", 8);
+    /**
+     * An 8x8 Bayer ordered dither, dispersed dots with a regular pattern.
+     */
+    public static final ThresholdMatrix BAYER = new ThresholdMatrix("Bayer", 8);
+    /**
+     * An 8x8 line screen, horizontal lines which thicken with the value.
+     */
+    public static final ThresholdMatrix LINE_SCREEN = new ThresholdMatrix("Line Screen", 8);
+    /**
+     * A 64x64 blue noise tile, dispersed dots with no visible pattern.
+     */
+    public static final ThresholdMatrix BLUE_NOISE = new ThresholdMatrix("Blue Noise", 64);
+    
+    private final String name;
+    private final int size;
+    // The thresholds row by row, calculated when first requested
+    private int[] thresholds;
+    /**
+     * Creates a ThresholdMatrix of the specified height and width.
+     */
+    private ThresholdMatrix(String name, int size){
+        this.name = name;
+        this.size = size;
+    }
+    /**
+     * Returns the name of this ThresholdMatrix.
+     */
+    public String getName(){
+        return name;
+    }
+    /**
+     * Returns the height and width of this ThresholdMatrix.
+     */
+    int getSize(){
+        return size;
+    }
+    /**
+     * Returns the thresholds of this ThresholdMatrix row by row. They are 
+     * calculated on the first call, the returned array must not be changed.
+     */
+    synchronized int[] getThresholds(){
+        if(thresholds == null){
+            int[] ranks;
+            if(this == CLUSTERED_DOT){
+                ranks = clusteredDot(size);
+            }else if(this == BAYER){
+                ranks = bayer(size);
+            }else if(this == LINE_SCREEN){
+                ranks = lineScreen(size);
+            }else{
+                ranks = blueNoise(size);
+            }
+            // Spread the ranks evenly over the values 0 to 255, where the 
+            // cell of rank 0 is switched on first
+            int levels = ranks.length;
+            int[] t = new int[levels];
+            for(int i = 0; i < levels; i++){
+                t[i] = ((2 * ranks[i] + 1) * 255) / (2 * levels);
+            }
+            thresholds = t;
+        }
+        return thresholds;
+    }
+    /**
+     * Returns the ranks of the cells, row by row, ordered by decreasing key
+     * then by increasing index.
+     */
+    private static int[] rank(final double[] keys){
+        Integer[] order = new Integer[keys.length];
+        for(int i = 0; i < keys.length; i++){
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>(){
+            public int compare(Integer a, Integer b){
+                int c = Double.compare(keys[b], keys[a]);
+                return c != 0 ? c : a.compareTo(b);
+            }
+        });
+        int[] ranks = new int[keys.length];
+        for(int r = 0; r < order.length; r++){
+            ranks[order[r]] = r;
+        }
+        return ranks;
+    }
+    /**
+     * Returns the ranks of a clustered-dot screen, ordered by a round spot
+     * function which is highest at the centre of the tile.
+     */
+    private static int[] clusteredDot(int size){
+        double[] keys = new double[size * size];
+        for(int y = 0; y < size; y++){
+            for(int x = 0; x < size; x++){
+                // Coordinates from -1 to 1 across the tile
+                double u = (2d * x + 1) / size - 1d;
+                double v = (2d * y + 1) / size - 1d;
+                // Break ties between cells at the same distance by angle
+                keys[y * size + x] = Math.cos(Math.PI * u) + Math.cos(Math.PI * v) 
+                                   + 1e-6 * Math.atan2(v, u);
+            }
+        }
+        return rank(keys);
+    }
+    /**
+     * Returns the ranks of a Bayer matrix, where size is a power of 2.
+     */
+    private static int[] bayer(int size){
+        int[] ranks = {0};
+        // Each step replaces every cell with a 2x2 block of 4 * rank + (0, 2, 3, 1)
+        for(int n = 1; n < size; n *= 2){
+            int[] next = new int[4 * n * n];
+            for(int y = 0; y < n; y++){
+                for(int x = 0; x < n; x++){
+                    int r = 4 * ranks[y * n + x];
+                    next[(2 * y) * 2 * n + 2 * x] = r;
+                    next[(2 * y) * 2 * n + 2 * x + 1] = r + 2;
+                    next[(2 * y + 1) * 2 * n + 2 * x] = r + 3;
+                    next[(2 * y + 1) * 2 * n + 2 * x + 1] = r + 1;
+                }
+            }
+            ranks = next;
+        }
+        return ranks;
+    }
+    /**
+     * Returns the ranks of a horizontal line screen. Rows closer to the centre
+     * of the tile come first, and cells within a row are dispersed in Bayer 
+     * order so lines thicken smoothly.
+     */
+    private static int[] lineScreen(int size){
+        int[] row = bayer(size);
+        double[] keys = new double[size * size];
+        for(int y = 0; y < size; y++){
+            double v = (2d * y + 1) / size - 1d;
+            for(int x = 0; x < size; x++){
+                keys[y * size + x] = -Math.abs(v) * size * size - row[x];
+            }
+        }
+        return rank(keys);
+    }
+    /**
+     * Returns the ranks of a blue noise tile, created with the void and 
+     * cluster method. Cells are added one at a time into the largest void, 
+     * the cell furthest from all those already added, where distance is 
+     * measured by a Gaussian filter wrapping around the tile.
+     */
+    private static int[] blueNoise(int size){
+        int cells = size * size;
+        double sigma = 1.5d;
+        // The filter for each offset across the wrapping tile
+        double[] filter = new double[cells];
+        for(int y = 0; y < size; y++){
+            for(int x = 0; x < size; x++){
+                int dx = Math.min(x, size - x);
+                int dy = Math.min(y, size - y);
+                filter[y * size + x] = Math.exp(-(dx * dx + dy * dy) / (2 * sigma * sigma));
+            }
+        }
+        boolean[] on = new boolean[cells];
+        double[] energy = new double[cells];
+        int[] ranks = new int[cells];
+        // Start from a sparse random pattern which is relaxed into blue noise
+        Random random = new Random(0);
+        int initial = cells / 10;
+        for(int n = 0; n < initial;){
+            int cell = random.nextInt(cells);
+            if(!on[cell]){
+                toggle(cell, on, energy, filter, size);
+                n++;
+            }
+        }
+        // Move the tightest cluster into the largest void until it stays put
+        for(int n = 0; n < cells; n++){
+            int cluster = extreme(on, energy, true);
+            toggle(cluster, on, energy, filter, size);
+            int gap = extreme(on, energy, false);
+            toggle(gap, on, energy, filter, size);
+            if(gap == cluster){
+                break;
+            }
+        }
+        boolean[] prototype = on.clone();
+        double[] prototypeEnergy = energy.clone();
+        // Rank the initial cells by removing the tightest cluster each time
+        for(int rank = initial - 1; rank >= 0; rank--){
+            int cluster = extreme(on, energy, true);
+            toggle(cluster, on, energy, filter, size);
+            ranks[cluster] = rank;
+        }
+        // Rank the remaining cells by filling the largest void each time
+        on = prototype;
+        energy = prototypeEnergy;
+        for(int rank = initial; rank < cells; rank++){
+            int gap = extreme(on, energy, false);
+            toggle(gap, on, energy, filter, size);
+            ranks[gap] = rank;
+        }
+        return ranks;
+    }
+    /**
+     * Switches the cell on or off, and updates the energy of every cell.
+     */
+    private static void toggle(int cell, boolean[] on, double[] energy, double[] filter, int size){
+        on[cell] = !on[cell];
+        double sign = on[cell] ? 1d : -1d;
+        int cx = cell % size, cy = cell / size;
+        for(int y = 0; y < size; y++){
+            int fy = ((y - cy + size) % size) * size;
+            for(int x = 0; x < size; x++){
+                energy[y * size + x] += sign * filter[fy + (x - cx + size) % size];
+            }
+        }
+    }
+    /**
+     * Returns the on cell with the highest energy (the tightest cluster) if
+     * cluster is true, otherwise the off cell with the lowest energy (the
+     * largest void).
+     */
+    private static int extreme(boolean[] on, double[] energy, boolean cluster){
+        int best = -1;
+        for(int i = 0; i < on.length; i++){
+            if(on[i] == cluster && (best < 0 || 
+                    (cluster ? energy[i] > energy[best] : energy[i] < energy[best]))){
+                best = i;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,497 @@
+ /*
+  * Comic Book Creator - A program for creating a comic book photo album.
+  * Copyright (C) 2013  Alastair Crowe
+  *
+  * This code is free software; you can redistribute it and/or modify it
+  * under the terms of the GNU General Public License version 2 only, as
+  * published by the Free Software Foundation.
+  *
+  * This code is distributed in the hope that it will be useful, but WITHOUT
+  * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+  * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+  * version 2 for more details.
+  
+  * You should have received a copy of the GNU General Public License version
+  * 2 along with this work; if not, write to the Free Software Foundation,
+  * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+  *
+  * Please contact comicbookhelp@gmail.com if you need additional information
+  * or have any questions.
+  */
+package comicBookModel;
+
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+/**
+ * A VariantCache stores images with effects applied on disk, so they do not
+ * need to be recalculated in later sessions. Each entry is addressed by a 
+ * hash of the source images pixels and a description of the effect. Entries
+ * are stored deflated and read back a chunk at a time. When the entries 
+ * exceed the maximum size the least recently used are deleted.
+ * 
+ * The cache is best effort, if the directory cannot be used entries are 
+ * simply not found.
+ * @see ImageLayer
+ */
+public class VariantCache {
+    // The start of every entry, followed by the width, height and image type
+    private static final int MAGIC = 0x43425643;
+    private static final int HEADER_SIZE = 16;
+    // Part of every file name, increase it when the format or the algorithm
+    // behind an effect changes so older entries are no longer found
+    private static final int VERSION = 1;
+    private static final String SUFFIX = ".cbv";
+    // The size of the chunks passed to and from the Inflater and Deflater
+    private static final int CHUNK_SIZE = 1 << 16;
+    // The default cache directory, within the users home directory, and 
+    // maximum size in bytes
+    private static final String DEFAULT_DIRECTORY = ".comicBookCreator" + File.separator + "cache";
+    private static final long DEFAULT_MAX_SIZE = 256L << 20;
+    private static VariantCache defaultCache;
+    // The hashes of the images hashed so far
+    private static final Map<PositionedImage, String> HASHES = 
+            Collections.synchronizedMap(new WeakHashMap<PositionedImage, String>());
+    
+    private final File directory;
+    private final long maxSize;
+    // The size of each entry by file name, least recently used first
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<String, Long>(16, 0.75f, true);
+    private long size = 0;
+    private final boolean enabled;
+    // Writes entries in the background, one at a time
+    private final ExecutorService writer;
+    /**
+     * Creates a VariantCache in the directory, which is created if needed.
+     * @param directory The directory the entries are stored in
+     * @param maxSize The maximum total size of the entries in bytes
+     * @throws IllegalArgumentException If the directory is null or maxSize
+     * is less than 1
+     */
+    public VariantCache(File directory, long maxSize){
+        if(directory == null || maxSize < 1){
+            throw new IllegalArgumentException();
+        }
+        this.directory = directory;
+        this.maxSize = maxSize;
+        boolean enabled;
+        try {
+            enabled = directory.isDirectory() || directory.mkdirs();
+            if(enabled){
+                // Index the existing entries, least recently used first
+                File[] files = directory.listFiles();
+                if(files != null){
+                    Arrays.sort(files, new Comparator<File>(){
+                        public int compare(File a, File b){
+                            return Long.compare(a.lastModified(), b.lastModified());
+                        }
+                    });
+                    for(File file : files){
+                        if(file.getName().endsWith(SUFFIX)){
+                            entries.put(file.getName(), file.length());
+                            size += file.length();
+                        }
+                    }
+                }
+            }
+        } catch (SecurityException e) {
+            entries.clear();
+            size = 0;
+            enabled = false;
+        }
+        this.enabled = enabled;
+        ThreadFactory factory = new ThreadFactory(){
+            public Thread newThread(Runnable r){
+                Thread thread = new Thread(r, "Variant Cache");
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 1L, TimeUnit.SECONDS, 
+                new LinkedBlockingQueue<Runnable>(), factory);
+        executor.allowCoreThreadTimeOut(true);
+        this.writer = executor;
+    }
+    /**
+     * Creates a disabled VariantCache, in which entries are never found or
+     * stored.
+     */
+    private VariantCache(){
+        this.directory = null;
+        this.maxSize = 0;
+        this.enabled = false;
+        this.writer = null;
+    }
+    /**
+     * Returns the VariantCache shared by all ImageLayers, in the users home
+     * directory. If the home directory cannot be read, for example when 
+     * running without permissions, the VariantCache is disabled.
+     */
+    public static synchronized VariantCache getDefault(){
+        if(defaultCache == null){
+            String home = null;
+            try {
+                home = System.getProperty("user.home");
+            } catch (SecurityException e) {}
+            if(home == null){
+                defaultCache = new VariantCache();
+            }else{
+                defaultCache = new VariantCache(new File(home, DEFAULT_DIRECTORY), DEFAULT_MAX_SIZE);
+            }
+        }
+        return defaultCache;
+    }
+    /**
+     * Returns a hash of the size, type and pixels of the image, which 
+     * together with the effect addresses an entry. The hash is remembered 
+     * while the image is in use, so the image must not be changed once it 
+     * has been hashed.
+     */
+    public static String hash(PositionedImage image){
+        String hash = HASHES.get(image);
+        if(hash == null){
+            hash = calculateHash(image);
+            HASHES.put(image, hash);
+        }
+        return hash;
+    }
+    /**
+     * Returns the hash of the image if it has already been calculated, or
+     * null if it has not.
+     * @see #hash(PositionedImage)
+     */
+    public static String getHash(PositionedImage image){
+        return HASHES.get(image);
+    }
+    private static String calculateHash(PositionedImage image){
+        MessageDigest digest = newDigest();
+        ByteBuffer buffer = ByteBuffer.allocate(Math.max(12, image.getWidth() * 4));
+        buffer.putInt(image.getWidth()).putInt(image.getHeight()).putInt(image.getType());
+        digest.update(buffer.array(), 0, 12);
+        if(image.getType() == PositionedImage.TYPE_INT_RGB){
+            // Hash a row at a time
+            int[] data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            int width = image.getWidth();
+            for(int offset = 0; offset < data.length; offset += width){
+                buffer.clear();
+                buffer.asIntBuffer().put(data, offset, width);
+                digest.update(buffer.array(), 0, width * 4);
+            }
+        }else{
+            digest.update(((DataBufferByte) image.getRaster().getDataBuffer()).getData());
+        }
+        return toHex(digest.digest());
+    }
+    /**
+     * Returns the image stored for the source hash and effect, or null if 
+     * there is none.
+     * @param source The hash of the source image
+     * @param effect A description of the effect and all its parameters
+     * @see #hash(PositionedImage)
+     */
+    public PositionedImage get(String source, String effect){
+        if(!enabled){
+            return null;
+        }
+        String name = fileName(source, effect);
+        synchronized(this){
+            if(entries.get(name) == null){
+                return null;
+            }
+        }
+        File file = new File(directory, name);
+        try {
+            PositionedImage image = read(file);
+            // Record the use, so it survives into later sessions
+            file.setLastModified(System.currentTimeMillis());
+            return image;
+        } catch (IOException e) {
+            remove(name);
+            return null;
+        } catch (DataFormatException e) {
+            remove(name);
+            return null;
+        }
+    }
+    /**
+     * Stores the image for the source hash and effect. The entry is written 
+     * in the background.
+     * @param source The hash of the source image
+     * @param effect A description of the effect and all its parameters
+     * @param image The source image with the effect applied
+     * @see #hash(PositionedImage)
+     */
+    public void put(String source, String effect, final PositionedImage image){
+        if(!enabled || image == null){
+            return;
+        }
+        final String name = fileName(source, effect);
+        synchronized(this){
+            if(entries.containsKey(name)){
+                return;
+            }
+        }
+        writer.execute(new Runnable(){
+            public void run() {
+                try {
+                    write(name, image);
+                } catch (IOException e) {}
+            }
+        });
+    }
+    /**
+     * Stores the image for the source image and effect. The source is hashed
+     * and the entry written in the background.
+     * @param source The source image
+     * @param effect A description of the effect and all its parameters
+     * @param image The source image with the effect applied
+     */
+    public void put(final PositionedImage source, final String effect, final PositionedImage image){
+        if(!enabled || source == null || image == null){
+            return;
+        }
+        writer.execute(new Runnable(){
+            public void run() {
+                String name = fileName(hash(source), effect);
+                synchronized(VariantCache.this){
+                    if(entries.containsKey(name)){
+                        return;
+                    }
+                }
+                try {
+                    write(name, image);
+                } catch (IOException e) {}
+            }
+        });
+    }
+    /**
+     * Hashes the source image in the background, so its entries can later 
+     * be found without hashing it first.
+     * @see #getHash(PositionedImage)
+     */
+    public void prepare(final PositionedImage source){
+        if(!enabled || source == null){
+            return;
+        }
+        writer.execute(new Runnable(){
+            public void run() {
+                hash(source);
+            }
+        });
+    }
+    /**
+     * Reads an entry a chunk at a time.
+     */
+    private static PositionedImage read(File file) throws IOException, DataFormatException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while(header.hasRemaining()){
+                if(channel.read(header) < 0){
+                    throw new IOException();
+                }
+            }
+            header.flip();
+            if(header.getInt() != MAGIC){
+                throw new IOException();
+            }
+            int width = header.getInt();
+            int height = header.getInt();
+            int type = header.getInt();
+            PositionedImage image;
+            try {
+                image = new PositionedImage(width, height, type);
+            } catch (IllegalArgumentException e) {
+                throw new IOException(e);
+            }
+            Inflater inflater = new Inflater();
+            byte[] chunk = new byte[CHUNK_SIZE];
+            try {
+                if(type == PositionedImage.TYPE_INT_RGB){
+                    // Inflate a row at a time, 3 bytes per pixel
+                    int[] data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+                    byte[] row = new byte[width * 3];
+                    for(int offset = 0; offset < data.length; offset += width){
+                        inflateFully(inflater, channel, chunk, row);
+                        for(int x = 0, i = 0; x < width; x++, i += 3){
+                            data[offset + x] = ((row[i] & 0xFF) << 16) | ((row[i + 1] & 0xFF) << 8) | (row[i + 2] & 0xFF);
+                        }
+                    }
+                }else{
+                    inflateFully(inflater, channel, chunk, ((DataBufferByte) image.getRaster().getDataBuffer()).getData());
+                }
+            } finally {
+                inflater.end();
+            }
+            return image;
+        } finally {
+            channel.close();
+        }
+    }
+    /**
+     * Inflates until the array is full, reading the input from the channel a
+     * chunk at a time as the inflater needs it.
+     */
+    private static void inflateFully(Inflater inflater, FileChannel channel, byte[] chunk, byte[] array) 
+            throws IOException, DataFormatException {
+        int length = 0;
+        while(length < array.length){
+            if(inflater.needsInput()){
+                int read = channel.read(ByteBuffer.wrap(chunk));
+                if(read < 0){
+                    throw new IOException();
+                }
+                inflater.setInput(chunk, 0, read);
+            }
+            int inflated = inflater.inflate(array, length, array.length - length);
+            if(inflated == 0 && (inflater.finished() || inflater.needsDictionary())){
+                throw new IOException();
+            }
+            length += inflated;
+        }
+    }
+    /**
+     * Writes an entry to a temporary file, then moves it into place and 
+     * evicts the least recently used entries over the maximum size.
+     */
+    private void write(String name, PositionedImage image) throws IOException {
+        File temp = new File(directory, name + ".tmp");
+        FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE, 
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(image.getWidth()).putInt(image.getHeight()).putInt(image.getType());
+            header.flip();
+            writeFully(channel, header);
+            byte[] out = new byte[CHUNK_SIZE];
+            int width = image.getWidth();
+            if(image.getType() == PositionedImage.TYPE_INT_RGB){
+                // Deflate a row at a time, 3 bytes per pixel
+                int[] data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+                byte[] row = new byte[width * 3];
+                for(int offset = 0; offset < data.length; offset += width){
+                    for(int x = 0, i = 0; x < width; x++, i += 3){
+                        int rgb = data[offset + x];
+                        row[i] = (byte) (rgb >> 16);
+                        row[i + 1] = (byte) (rgb >> 8);
+                        row[i + 2] = (byte) rgb;
+                    }
+                    deflater.setInput(row);
+                    deflate(deflater, channel, out, false);
+                }
+            }else{
+                deflater.setInput(((DataBufferByte) image.getRaster().getDataBuffer()).getData());
+                deflate(deflater, channel, out, false);
+            }
+            deflate(deflater, channel, out, true);
+        } finally {
+            deflater.end();
+            channel.close();
+        }
+        File file = new File(directory, name);
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, 
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+        synchronized(this){
+            Long previous = entries.put(name, file.length());
+            size += file.length() - (previous == null ? 0 : previous);
+            // Evict the least recently used entries, but never the new one. 
+            // Files that cannot be deleted, e.g. while open elsewhere, stay 
+            // counted and are tried again next time
+            Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+            while(size > maxSize && iterator.hasNext()){
+                Map.Entry<String, Long> entry = iterator.next();
+                if(!entry.getKey().equals(name) && 
+                        new File(directory, entry.getKey()).delete()){
+                    size -= entry.getValue();
+                    iterator.remove();
+                }
+            }
+        }
+    }
+    /**
+     * Deflates until the deflater needs more input, or if finishing until all
+     * the output has been written.
+     */
+    private static void deflate(Deflater deflater, FileChannel channel, byte[] out, 
+            boolean finish) throws IOException {
+        if(finish){
+            deflater.finish();
+        }
+        while(finish ? !deflater.finished() : !deflater.needsInput()){
+            int length = deflater.deflate(out, 0, out.length);
+            writeFully(channel, ByteBuffer.wrap(out, 0, length));
+        }
+    }
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while(buffer.hasRemaining()){
+            channel.write(buffer);
+        }
+    }
+    /**
+     * Removes an entry which could not be read, unless its file cannot be
+     * deleted in which case it stays counted.
+     */
+    private synchronized void remove(String name){
+        Long length = entries.get(name);
+        if(length != null && new File(directory, name).delete()){
+            size -= length;
+            entries.remove(name);
+        }
+    }
+    /**
+     * Returns the file name of the entry for the source hash and effect.
+     */
+    private static String fileName(String source, String effect){
+        MessageDigest digest = newDigest();
+        digest.update(ByteBuffer.allocate(4).putInt(VERSION).array());
+        digest.update(source.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(effect.getBytes(StandardCharsets.UTF_8));
+        return toHex(digest.digest()) + SUFFIX;
+    }
+    private static MessageDigest newDigest(){
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+    }
+    private static String toHex(byte[] bytes){
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for(byte b : bytes){
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+            hex.append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
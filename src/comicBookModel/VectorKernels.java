@@ -0,0 +1,67 @@
+ /*
+  * Comic Book Creator - A program for creating a comic book photo album.
+  * Copyright (C) 2013  Alastair Crowe
+  *
+  * This code is free software; you can redistribute it and/or modify it
+  * under the terms of the GNU General Public License version 2 only, as
+  * published by the Free Software Foundation.
+  *
+  * This code is distributed in the hope that it will be useful, but WITHOUT
+  * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+  * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+  * version 2 for more details.
+  
+  * You should have received a copy of the GNU General Public License version
+  * 2 along with this work; if not, write to the Free Software Foundation,
+  * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+  *
+  * Please contact comicbookhelp@gmail.com if you need additional information
+  * or have any questions.
+  */
+package comicBookModel;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+/**
+ * The PixelKernels using the incubating Vector API, which work on as many 
+ * packed pixels at a time as the CPU's vector registers hold. It needs 
+ * --add-modules jdk.incubator.vector to compile and run, and is only loaded
+ * by PixelKernels when the module is present.
+ * @see PixelKernels
+ */
+class VectorKernels extends PixelKernels {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+    
+    String getName(){
+        return VECTOR;
+    }
+    void addSaturated(int[] dst, int dstIndex, int[] src, int srcIndex, int length){
+        // The same packed addition as PixelKernels#addSaturated(int, int),
+        // on each lane
+        int bound = SPECIES.loopBound(length);
+        int i = 0;
+        for(; i < bound; i += SPECIES.length()){
+            IntVector rgb1 = IntVector.fromArray(SPECIES, dst, dstIndex + i);
+            IntVector rgb2 = IntVector.fromArray(SPECIES, src, srcIndex + i);
+            IntVector low = rgb1.and(0x7F7F7F).add(rgb2.and(0x7F7F7F));
+            IntVector overflow = rgb1.and(rgb2).or(rgb1.or(rgb2).and(low)).and(0x808080);
+            IntVector sum = low.lanewise(VectorOperators.XOR, rgb1.lanewise(VectorOperators.XOR, rgb2).and(0x808080));
+            IntVector fill = overflow.lanewise(VectorOperators.LSHL, 1).sub(overflow.lanewise(VectorOperators.LSHR, 7));
+            sum.or(fill).intoArray(dst, dstIndex + i);
+        }
+        for(; i < length; i++){
+            dst[dstIndex + i] = addSaturated(dst[dstIndex + i], src[srcIndex + i]);
+        }
+    }
+    void copy(int[] src, int srcIndex, int[] dst, int dstIndex, int length){
+        int bound = SPECIES.loopBound(length);
+        int i = 0;
+        for(; i < bound; i += SPECIES.length()){
+            IntVector.fromArray(SPECIES, src, srcIndex + i).intoArray(dst, dstIndex + i);
+        }
+        for(; i < length; i++){
+            dst[dstIndex + i] = src[srcIndex + i];
+        }
+    }
+}